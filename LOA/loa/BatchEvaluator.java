@@ -0,0 +1,166 @@
+package loa;
+
+import java.util.Arrays;
+
+import static loa.Board.PLACE_SCORES;
+import static loa.Board.WEIGHTS;
+import static loa.Square.ALL_SQUARES;
+import static loa.Square.BOARD_SIZE;
+import static loa.Square.NUM_SQUARES;
+
+/**
+ * Evaluates large batches of positions, for tuning and for filtering
+ * data sets, without building a Board for each.  A position is packed as
+ * the bitboards of White's and of Black's pieces and a flag telling
+ * whether White is to move.  The terms computed are those of
+ * Board.heuristicValue that are functions of the bitboards costing only
+ * a few logical operations and bit counts: the turn, boardscore, compos,
+ * walled, connections, and distribution, each weighted as in the
+ * heuristic.  The others (concentration, stronghold, mobility, and
+ * connectDistance) loop over pieces, rings, or dilation steps and are
+ * left to Board.
+ * <p>
+ * Positions are taken in blocks of BLOCK.  Each quantity is computed for
+ * a whole block by its own loop over arrays of primitives (one array per
+ * quantity, rather than one object per position), simple enough for
+ * the compiler to vectorize.  There is deliberately no path through the
+ * incubating Vector API (jdk.incubator.vector): it would need
+ * --add-modules on every compilation and run, including the Makefile and
+ * the tests, and the plain loops get most of its benefit.  Both colors
+ * must have pieces in every position.  A BatchEvaluator keeps scratch
+ * arrays and so must not be shared among threads.
+ *
+ * @author Amogh
+ */
+final class BatchEvaluator {
+
+    /**
+     * Number of positions evaluated together.
+     */
+    static final int BLOCK = 256;
+
+    /**
+     * Set VALUES[i] to the sum of the weighted bitboard terms of the
+     * heuristic value for the position with White's pieces on WHITE[i],
+     * Black's pieces on BLACK[i], and White to move iff WHITETOMOVE[i], for
+     * 0 <= i < N.
+     */
+    void evaluate(long[] white, long[] black, boolean[] whiteToMove,
+                  double[] values, int n) {
+        for (int start = 0; start < n; start += BLOCK) {
+            int size = Math.min(BLOCK, n - start);
+            for (int i = 0; i < size; i += 1) {
+                values[start + i] =
+                        whiteToMove[start + i] ? WEIGHTS[0] : -WEIGHTS[0];
+            }
+            addTerms(white, black, start, size, 1, values);
+            addTerms(black, white, start, size, -1, values);
+        }
+    }
+
+    /**
+     * Add SIGN times the terms for the pieces on OWN[i] against opposing
+     * pieces on OPPONENTS[i] to VALUES[i], for START <= i < START + SIZE.
+     */
+    private void addTerms(long[] own, long[] opponents, int start, int size,
+                          int sign, double[] values) {
+        int[] counts = _counts, places = _places, pairs = _pairs,
+                walls = _walls, spreads = _spreads, rows = _rows,
+                cols = _cols;
+        for (int i = 0; i < size; i += 1) {
+            counts[i] = Long.bitCount(own[start + i]);
+        }
+        for (int i = 0; i < size; i += 1) {
+            long pieces = own[start + i];
+            int score = 0;
+            for (int m = 0; m < PLACE_MASKS.length; m += 1) {
+                score += PLACE_VALUES[m]
+                        * Long.bitCount(pieces & PLACE_MASKS[m]);
+            }
+            places[i] = score;
+        }
+        for (int i = 0; i < size; i += 1) {
+            long pieces = own[start + i];
+            int rowSum = 0, colSum = 0;
+            for (int k = 1; k < BOARD_SIZE; k += 1) {
+                rowSum += k * Long.bitCount(pieces & ROWS[k]);
+                colSum += k * Long.bitCount(pieces & COLS[k]);
+            }
+            rows[i] = rowSum;
+            cols[i] = colSum;
+        }
+        for (int i = 0; i < size; i += 1) {
+            pairs[i] = Board.adjacentPairs(own[start + i]);
+        }
+        for (int i = 0; i < size; i += 1) {
+            walls[i] = Board.walled(own[start + i], opponents[start + i]);
+        }
+        for (int i = 0; i < size; i += 1) {
+            spreads[i] = Board.distribution(own[start + i]);
+        }
+        for (int i = 0; i < size; i += 1) {
+            double pieces = counts[i];
+            int com = (rows[i] / counts[i]) * BOARD_SIZE + cols[i] / counts[i];
+            double score = WEIGHTS[3] * (places[i] * 10 / pieces)
+                    + WEIGHTS[4] * COMPOS[com]
+                    + WEIGHTS[7] * (2 * pairs[i] / pieces)
+                    + WEIGHTS[8] * spreads[i]
+                    - WEIGHTS[5] * walls[i];
+            values[start + i] += sign * score;
+        }
+    }
+
+    /**
+     * The distinct values of Board.PLACE_SCORES.
+     */
+    private static final int[] PLACE_VALUES;
+    /**
+     * The bitboard of the Squares whose place score is PLACE_VALUES[m].
+     */
+    private static final long[] PLACE_MASKS;
+    /**
+     * ROWS[k] and COLS[k] are the bitboards of row and column k.
+     */
+    private static final long[] ROWS = new long[BOARD_SIZE],
+            COLS = new long[BOARD_SIZE];
+    /**
+     * The compos score of a center of mass on each Square, by index.
+     */
+    private static final int[] COMPOS = new int[NUM_SQUARES];
+
+    static {
+        int[] values = new int[NUM_SQUARES];
+        long[] masks = new long[NUM_SQUARES];
+        int n = 0;
+        for (Square sq : ALL_SQUARES) {
+            int v = PLACE_SCORES[sq.index()], m = 0;
+            while (m < n && values[m] != v) {
+                m += 1;
+            }
+            if (m == n) {
+                values[m] = v;
+                n += 1;
+            }
+            masks[m] |= sq.bit();
+            ROWS[sq.row()] |= sq.bit();
+            COLS[sq.col()] |= sq.bit();
+            COMPOS[sq.index()] = Board.compos(sq);
+        }
+        PLACE_VALUES = Arrays.copyOf(values, n);
+        PLACE_MASKS = Arrays.copyOf(masks, n);
+    }
+
+    /**
+     * Per-position quantities for one color in the current block: number
+     * of pieces, sum of place scores, number of adjacent pairs, walled
+     * score, distribution, and sums of rows and of columns.
+     */
+    private final int[]
+            _counts = new int[BLOCK],
+            _places = new int[BLOCK],
+            _pairs = new int[BLOCK],
+            _walls = new int[BLOCK],
+            _spreads = new int[BLOCK],
+            _rows = new int[BLOCK],
+            _cols = new int[BLOCK];
+}
@@ -4,21 +4,23 @@ package loa;
 
 import java.util.ArrayList;
 import java.util.Arrays;
-import java.util.Comparator;
 import java.util.Formatter;
-import java.util.HashSet;
-import java.util.Hashtable;
 import java.util.List;
-import java.util.Set;
+import java.util.Random;
 import java.util.regex.Pattern;
 
-import static java.util.Collections.reverseOrder;
 import static loa.Piece.BP;
 import static loa.Piece.EMP;
 import static loa.Piece.WP;
 import static loa.Square.ALL_SQUARES;
 import static loa.Square.BOARD_SIZE;
+import static loa.Square.CORNER_SQUARES;
+import static loa.Square.EDGE_SQUARES;
+import static loa.Square.FILE_A;
+import static loa.Square.FILE_H;
+import static loa.Square.NUM_SQUARES;
 import static loa.Square.sq;
+import static loa.Square.step;
 
 /**
  * Represents the state of a game of Lines of Action.
@@ -51,9 +53,122 @@ class Board {
             {EMP, BP, BP, BP, BP, BP, BP, EMP}
     };
     /**
-     * Current contents of the board.  Square S is at _board[S.index()].
+     * Current contents of the board, as one bitboard per color.  Square S
+     * holds a white piece iff (_whiteBits & S.bit()) != 0, and likewise
+     * for black.  No bit is ever set in both.
      */
-    private final Piece[] _board = new Piece[BOARD_SIZE * BOARD_SIZE];
+    private long _whiteBits, _blackBits;
+
+    /**
+     * Number of pieces of either color on each row, column, diagonal
+     * (indexed by Square.diagonal()) and antidiagonal (indexed by
+     * Square.antidiagonal()).  Kept up to date by set.
+     */
+    private final int[]
+            _rowCounts = new int[BOARD_SIZE],
+            _colCounts = new int[BOARD_SIZE],
+            _diagCounts = new int[2 * BOARD_SIZE - 1],
+            _antiCounts = new int[2 * BOARD_SIZE - 1];
+
+    /**
+     * Counts of the 2x2 windows (including those overhanging the edges)
+     * containing exactly one piece (Q1), exactly three pieces (Q3), and
+     * two diagonally opposite pieces (QD), by color (0 for white, 1 for
+     * black).  By Gray's formula, (Q1 - Q3 - 2 * QD) / 4 is the Euler
+     * number of the color's pieces under 8-connectivity: the number of
+     * regions less the number of holes.  Kept up to date by set.
+     */
+    private final int[][] _quadCounts = new int[2][3];
+    /**
+     * Indices of the window counts in _quadCounts.
+     */
+    private static final int Q1 = 0, Q3 = 1, QD = 2;
+
+    /**
+     * STRONGHOLD_CENTERS[k] is the bitboard of the Squares that have
+     * neighbors in all of the directions 2k, 2k + 1, and 2k + 2, the
+     * orientations examined by stronghold.
+     */
+    private static final long[] STRONGHOLD_CENTERS = new long[3];
+
+    static {
+        for (Square sq : ALL_SQUARES) {
+            for (int k = 0; k < STRONGHOLD_CENTERS.length; k += 1) {
+                if (sq.moveDest(2 * k, 1) != null
+                        && sq.moveDest(2 * k + 1, 1) != null
+                        && sq.moveDest(2 * k + 2, 1) != null) {
+                    STRONGHOLD_CENTERS[k] |= sq.bit();
+                }
+            }
+        }
+    }
+
+    /**
+     * Running totals for the pieces of each color (0 for white, 1 for
+     * black): their number, the sums of their rows and of their columns,
+     * and the sum of PLACE_SCORES over their Squares.  Kept up to date by
+     * set, so that the positional terms of the heuristic need not scan
+     * the pieces.
+     */
+    private final int[]
+            _pieceCounts = new int[2],
+            _rowSums = new int[2],
+            _colSums = new int[2],
+            _placeScores = new int[2];
+
+    /**
+     * The network evaluating this position for networkValue, or null.
+     */
+    private Network _network;
+    /**
+     * The accumulator of _network for the current contents, kept up to
+     * date by put while _network is not null.
+     */
+    private int[] _accumulator;
+
+    /**
+     * The score of a piece on each Square (by index) used by boardscore:
+     * -2 on an edge, -8 in a corner, and otherwise 5, 3, or 1 according
+     * to distance from the center.
+     */
+    static final int[] PLACE_SCORES = new int[NUM_SQUARES];
+
+    static {
+        int[] interior = {5, 3, 1};
+        for (Square sq : ALL_SQUARES) {
+            if (sq.isEdge()) {
+                PLACE_SCORES[sq.index()] = sq.isCorner() ? -8 : -2;
+            } else {
+                PLACE_SCORES[sq.index()] = interior[sq.centrality()];
+            }
+        }
+    }
+
+    /**
+     * Zobrist keys: ZOBRIST[0][i] and ZOBRIST[1][i] are the random keys
+     * for a white and for a black piece on the Square whose index is i.
+     */
+    private static final long[][] ZOBRIST = new long[2][NUM_SQUARES];
+    /**
+     * Zobrist key included when black is to move.
+     */
+    private static final long ZOBRIST_BLACK_TO_MOVE;
+
+    static {
+        Random keys = new Random(0x4c4f41L);
+        for (long[] colorKeys : ZOBRIST) {
+            for (int i = 0; i < NUM_SQUARES; i += 1) {
+                colorKeys[i] = keys.nextLong();
+            }
+        }
+        ZOBRIST_BLACK_TO_MOVE = keys.nextLong();
+    }
+
+    /**
+     * Zobrist key of the current position: the xor of the keys of all
+     * pieces, and of ZOBRIST_BLACK_TO_MOVE if black is on move.
+     */
+    private long _zobrist;
 
     /** Weight for heuristic function.
      * 0 - Points for taking the turn
@@ -65,41 +180,55 @@ class Board {
      * 6 - stronghold
      * 7 - connections
      * 8 - distribution
-     * 9 - potential
+     * 9 - connectDistance (not yet tuned, so kept small)
      * {1, 25, 5000, 5, 1, 2, 8, 2.5, 3, 2};
      * */
-    static final double[] WEIGHTS = {1, 20, 50000, 5, 1, 2, 8, 2.5, 3, 0};
+    static final double[] WEIGHTS = {1, 20, 50000, 5, 1, 2, 8, 2.5, 3, 10};
+    /**
+     * Upper bounds on the mobility of one piece (8 moves, counted double
+     * if captures) and on the walled score of one corner piece (three
+     * adjacent opponents, scoring 4, 1, and 1).  Only corner pieces
+     * contribute to walled.
+     */
+    private static final double
+            MAX_PIECE_MOBILITY = 16,
+            MAX_CORNER_WALLED = 6;
+    /**
+     * Value returned by outside when the value may lie in the window.
+     */
+    private static final int NO_BOUND = Integer.MIN_VALUE;
     /**
      * List of all unretracted moves on this board, in order.
      */
     private final ArrayList<Move> _moves = new ArrayList<>();
     /**
-     * List of the sizes of continguous clusters of pieces, by color.
+     * The continguous clusters of pieces, by color, as bitboards.  These
+     * are updated incrementally by makeMove and rolled back by retract.
      */
-    private final ArrayList<Integer>
-            _whiteRegionSizes = new ArrayList<>(),
-            _blackRegionSizes = new ArrayList<>();
+    private final Connectivity
+            _whiteConnectivity = new Connectivity(),
+            _blackConnectivity = new Connectivity();
 
     /**
-     * List of the continguous clusters of pieces, by color.
+     * Undo stack: _undo[k] records the derived state in effect before
+     * move number k, for k < movesMade().  Only entries from index
+     * _undoBase up are valid; the others describe positions that were
+     * since altered by set, or that precede a copy.  The records are
+     * allocated once and reused.
      */
-    private final ArrayList<HashSet<Square>>
-            _whiteRegions = new ArrayList<>(),
-            _blackRegions = new ArrayList<>();
-
+    private UndoRecord[] _undo = new UndoRecord[0];
     /**
-     *  total pieces of a color on board.
+     * Index of the first valid entry of _undo.
      */
-    private  int
-            _whitepieces = 12,
-            _blackpieces = 12;
+    private int _undoBase;
 
     /**
-     * List of the continguous clusters of pieces, by color.
+     * Scratch array used by stronghold: bit c of element d is set when the
+     * piece on the Square with index c has been paired with its neighbor
+     * in direction d.
      */
-    private final Hashtable<Integer, Double>
-            _whitePartial = new Hashtable<>(),
-            _blackPartial = new Hashtable<>();
+    private final long[] _strongholdPairs = new long[8];
+
     /**
      * Current side on move.
      */
@@ -123,10 +252,6 @@ class Board {
      * in progress).  Use only if _winnerKnown.
      */
     private Piece _winner;
-    /**
-     * True iff subsets computation is up-to-date.
-     */
-    private boolean _subsetsInitialized;
 
     /**
      * A Board whose initial contents are taken from INITIALCONTENTS
@@ -151,10 +276,10 @@ class Board {
 
     /**
      * A Board whose initial contents and state are copied from
-     * BOARD.
+     * BOARD.  Nothing is recomputed: the derived state of BOARD is copied
+     * along with its contents.
      */
     Board(Board board) {
-        this();
         copyFrom(board);
     }
 
@@ -162,18 +287,32 @@ class Board {
      * Set my state to CONTENTS with SIDE to move.
      */
     void initialize(Piece[][] contents, Piece side) {
+        _whiteBits = _blackBits = 0;
+        _zobrist = turnKey(side);
+        Arrays.fill(_quadCounts[0], 0);
+        Arrays.fill(_quadCounts[1], 0);
+        Arrays.fill(_rowCounts, 0);
+        Arrays.fill(_colCounts, 0);
+        Arrays.fill(_diagCounts, 0);
+        Arrays.fill(_antiCounts, 0);
+        Arrays.fill(_pieceCounts, 0);
+        Arrays.fill(_rowSums, 0);
+        Arrays.fill(_colSums, 0);
+        Arrays.fill(_placeScores, 0);
+        if (_network != null) {
+            _network.refresh(_accumulator, 0, 0);
+        }
         for (int i = 0; i < BOARD_SIZE; i++) {
             for (int j = 0; j < BOARD_SIZE; j++) {
-                _board[sq(j, i).index()] = contents[i][j];
+                set(sq(j, i), contents[i][j]);
             }
         }
         _turn = side;
         _moveLimit = DEFAULT_MOVE_LIMIT;
-        _subsetsInitialized = false;
         _winnerKnown = false;
         _winner = null;
         _moves.clear();
-        computeRegions();
+        _undoBase = 0;
     }
 
     /**
@@ -184,29 +323,75 @@ class Board {
     }
 
     /**
-     * Set my state to a copy of BOARD.
+     * Set my state to a copy of BOARD, including whatever derived state
+     * (regions, winner) BOARD has computed, so that nothing need be
+     * recomputed.  BOARD's undo history is not copied, so that I cannot
+     * retract its moves any faster than by recomputing.
      */
     void copyFrom(Board board) {
         if (board == this) {
             return;
         }
-        System.arraycopy(board._board, 0, this._board, 0,
-                board._board.length);
+        _whiteBits = board._whiteBits;
+        _blackBits = board._blackBits;
+        _zobrist = board._zobrist;
+        System.arraycopy(board._quadCounts[0], 0, _quadCounts[0], 0, 3);
+        System.arraycopy(board._quadCounts[1], 0, _quadCounts[1], 0, 3);
+        System.arraycopy(board._rowCounts, 0, _rowCounts, 0, BOARD_SIZE);
+        System.arraycopy(board._colCounts, 0, _colCounts, 0, BOARD_SIZE);
+        System.arraycopy(board._diagCounts, 0, _diagCounts, 0,
+                _diagCounts.length);
+        System.arraycopy(board._antiCounts, 0, _antiCounts, 0,
+                _antiCounts.length);
+        System.arraycopy(board._pieceCounts, 0, _pieceCounts, 0, 2);
+        System.arraycopy(board._rowSums, 0, _rowSums, 0, 2);
+        System.arraycopy(board._colSums, 0, _colSums, 0, 2);
+        System.arraycopy(board._placeScores, 0, _placeScores, 0, 2);
+        _network = board._network;
+        if (_network != null) {
+            _accumulator = accumulatorFor(_network);
+            System.arraycopy(board._accumulator, 0, _accumulator, 0,
+                    _accumulator.length);
+        }
         _moveLimit = board._moveLimit;
         _turn = board._turn;
         _winner = board._winner;
         _winnerKnown = board._winnerKnown;
-        _subsetsInitialized = board._subsetsInitialized;
+        _whiteConnectivity.copyFrom(board._whiteConnectivity);
+        _blackConnectivity.copyFrom(board._blackConnectivity);
+        _whitecenterofmass = board._whitecenterofmass;
+        _blackcenterofmass = board._blackcenterofmass;
         _moves.clear();
         _moves.addAll(board._moves);
-        computeRegions();
+        _undoBase = movesMade();
     }
 
     /**
      * Return the contents of the square at SQ.
      */
     Piece get(Square sq) {
-        return _board[sq.index()];
+        long bit = sq.bit();
+        if ((_whiteBits & bit) != 0) {
+            return WP;
+        } else if ((_blackBits & bit) != 0) {
+            return BP;
+        } else {
+            return EMP;
+        }
+    }
+
+    /**
+     * Return the bitboard of the squares occupied by SIDE's pieces.
+     */
+    long pieces(Piece side) {
+        return side == WP ? _whiteBits : side == BP ? _blackBits : 0;
+    }
+
+    /**
+     * Return the bitboard of all occupied squares.
+     */
+    long occupied() {
+        return _whiteBits | _blackBits;
     }
 
     /**
@@ -222,10 +407,184 @@ class Board {
      */
     void set(Square sq, Piece v, Piece next) {
         if (next != null) {
-            _turn = next;
+            setTurn(next);
+        }
+        put(sq, v);
+        _whiteConnectivity.invalidate();
+        _blackConnectivity.invalidate();
+        _undoBase = movesMade();
+    }
+
+    /**
+     * Set the square at SQ to V, updating the line counts, running
+     * totals, network accumulator, and Zobrist key but not the regions.
+     */
+    private void put(Square sq, Piece v) {
+        Piece old = get(sq);
+        if (old == v) {
+            return;
+        }
+        if (old != EMP) {
+            updateQuads(sq, old);
+            updateSums(sq, old, -1);
+        }
+        if (v != EMP) {
+            updateQuads(sq, v);
+            updateSums(sq, v, 1);
+        }
+        if (_network != null) {
+            _network.update(_accumulator, sq, old, v);
+        }
+        _zobrist ^= pieceKey(sq, old) ^ pieceKey(sq, v);
+        long bit = sq.bit();
+        int delta = (v == EMP ? 0 : 1) - ((occupied() & bit) == 0 ? 0 : 1);
+        if (delta != 0) {
+            _rowCounts[sq.row()] += delta;
+            _colCounts[sq.col()] += delta;
+            _diagCounts[sq.diagonal()] += delta;
+            _antiCounts[sq.antidiagonal()] += delta;
+        }
+        _whiteBits &= ~bit;
+        _blackBits &= ~bit;
+        if (v == WP) {
+            _whiteBits |= bit;
+        } else if (v == BP) {
+            _blackBits |= bit;
+        }
+    }
+
+    /**
+     * Update _quadCounts for the windows around SQ, which is about to
+     * gain or lose a piece of color SIDE.
+     */
+    private void updateQuads(Square sq, Piece side) {
+        int[] counts = _quadCounts[side == WP ? 0 : 1];
+        long own = pieces(side);
+        for (long quad : sq.quads()) {
+            long before = own & quad, after = before ^ sq.bit();
+            int kind = quadKind(before);
+            if (kind >= 0) {
+                counts[kind] -= 1;
+            }
+            kind = quadKind(after);
+            if (kind >= 0) {
+                counts[kind] += 1;
+            }
+        }
+    }
+
+    /**
+     * Add DELTA (1 or -1) pieces of color SIDE on SQ to the running
+     * totals.
+     */
+    private void updateSums(Square sq, Piece side, int delta) {
+        int k = side == WP ? 0 : 1;
+        _pieceCounts[k] += delta;
+        _rowSums[k] += delta * sq.row();
+        _colSums[k] += delta * sq.col();
+        _placeScores[k] += delta * PLACE_SCORES[sq.index()];
+    }
+
+    /**
+     * Evaluate positions with NETWORK in networkValue, or with nothing if
+     * NETWORK is null.  The accumulator is computed afresh here and then
+     * kept up to date as pieces move.
+     */
+    void setNetwork(Network network) {
+        _network = network;
+        if (network != null) {
+            _accumulator = accumulatorFor(network);
+            network.refresh(_accumulator, _whiteBits, _blackBits);
+        }
+    }
+
+    /**
+     * Return the value of this position according to the network set by
+     * setNetwork, which must not be null.  Like heuristicValue, it is
+     * positive when White is ahead.
+     */
+    int networkValue() {
+        return _network.evaluate(_accumulator);
+    }
+
+    /**
+     * Return _accumulator if it suits NETWORK, and otherwise a new array
+     * that does.
+     */
+    private int[] accumulatorFor(Network network) {
+        if (_accumulator == null
+                || _accumulator.length != network.hiddenSize()) {
+            return new int[network.hiddenSize()];
+        }
+        return _accumulator;
+    }
+
+    /**
+     * Return the kind (Q1, Q3, or QD) of the 2x2 window whose occupied
+     * Squares are PIECES, or -1 if it is of none of those kinds.
+     */
+    private static int quadKind(long pieces) {
+        switch (Long.bitCount(pieces)) {
+        case 1:
+            return Q1;
+        case 3:
+            return Q3;
+        case 2:
+            int gap = Long.numberOfTrailingZeros(pieces & (pieces - 1))
+                    - Long.numberOfTrailingZeros(pieces);
+            return gap == BOARD_SIZE - 1 || gap == BOARD_SIZE + 1 ? QD : -1;
+        default:
+            return -1;
         }
-        _board[sq.index()] = v;
-        _subsetsInitialized = false;
+    }
+
+    /**
+     * Return the Euler number of SIDE's pieces: the number of their
+     * regions less the number of holes in them.  Since no region count is
+     * less than this, a value above 1 shows that SIDE's pieces are not
+     * contiguous.
+     */
+    int eulerNumber(Piece side) {
+        int[] counts = _quadCounts[side == WP ? 0 : 1];
+        return (counts[Q1] - counts[Q3] - 2 * counts[QD]) / 4;
+    }
+
+    /**
+     * Make NEXT the side to move.
+     */
+    private void setTurn(Piece next) {
+        _zobrist ^= turnKey(_turn) ^ turnKey(next);
+        _turn = next;
+    }
+
+    /**
+     * Return the Zobrist key of the current position, which covers the
+     * contents of all squares and the side to move.  Equal positions have
+     * equal keys.
+     */
+    long zobristKey() {
+        return _zobrist;
+    }
+
+    /**
+     * Return the Zobrist key for piece P on SQ (0 for EMP).
+     */
+    private static long pieceKey(Square sq, Piece p) {
+        switch (p) {
+        case WP:
+            return ZOBRIST[0][sq.index()];
+        case BP:
+            return ZOBRIST[1][sq.index()];
+        default:
+            return 0;
+        }
+    }
+
+    /**
+     * Return the Zobrist key for SIDE being on move.
+     */
+    private static long turnKey(Piece side) {
+        return side == BP ? ZOBRIST_BLACK_TO_MOVE : 0;
     }
 
     /**
@@ -255,13 +614,22 @@ class Board {
      */
     void makeMove(Move move) {
         assert isLegal(move);
-        if (_board[move.getTo().index()] != EMP) {
+        Square from = move.getFrom(), to = move.getTo();
+        Piece mover = _turn, opponent = _turn.opposite();
+        if ((occupied() & to.bit()) != 0) {
             move = move.captureMove();
         }
-        set(move.getTo(), _turn, _turn.opposite());
-        set(move.getFrom(), EMP);
+        pushUndo();
+        put(to, mover);
+        put(from, EMP);
+        setTurn(opponent);
+        _winnerKnown = false;
+        _winner = null;
         _moves.add(move);
-
+        connectivity(mover).record(from.bit() | to.bit());
+        if (move.isCapture()) {
+            connectivity(opponent).record(to.bit());
+        }
     }
 
     /**
@@ -270,18 +638,74 @@ class Board {
      */
     void retract() {
         assert movesMade() > 0;
-        if (_winnerKnown || _winner != null) {
-            _winner = null;
-            _winnerKnown = false;
-        }
         Move last = _moves.remove(_moves.size() - 1);
-        set(last.getFrom(), _turn.opposite(), _turn.opposite());
+        Piece mover = _turn.opposite(), opponent = _turn;
+        put(last.getFrom(), mover);
         if (last.isCapture()) {
-            set(last.getTo(), _turn.opposite());
+            put(last.getTo(), opponent);
+            connectivity(opponent).undo();
+        } else {
+            put(last.getTo(), EMP);
+        }
+        connectivity(mover).undo();
+        setTurn(mover);
+        if (movesMade() >= _undoBase) {
+            popUndo(_undo[movesMade()]);
         } else {
-            set(last.getTo(), EMP);
+            _winner = null;
+            _winnerKnown = false;
+        }
+    }
+
+    /**
+     * Pass: make the other side the side to move without moving a piece,
+     * as a search does to test whether a position is good enough even
+     * without a move (a null move).  Requires that the game not be over.
+     * The move is not recorded, and is undone by retractNullMove.
+     */
+    void makeNullMove() {
+        assert !gameOver();
+        setTurn(_turn.opposite());
+    }
+
+    /**
+     * Undo the null move made by makeNullMove.
+     */
+    void retractNullMove() {
+        setTurn(_turn.opposite());
+    }
+
+    /**
+     * Save the derived state that makeMove is about to change in the
+     * undo record for the next move.
+     */
+    private void pushUndo() {
+        int k = movesMade();
+        if (k >= _undo.length) {
+            int n = _undo.length;
+            _undo = Arrays.copyOf(_undo, Math.max(2 * k + 1,
+                    2 * DEFAULT_MOVE_LIMIT));
+            for (int i = n; i < _undo.length; i += 1) {
+                _undo[i] = new UndoRecord();
+            }
         }
+        UndoRecord undo = _undo[k];
+        undo.zobrist = _zobrist;
+        undo.winner = _winner;
+        undo.winnerKnown = _winnerKnown;
+    }
 
+    /**
+     * Restore the derived state saved in UNDO, after the contents of the
+     * board have been put back as they were when it was saved.  The
+     * bitboards, line and window counts, Zobrist key, and connectivity
+     * are reversed exactly by put and Connectivity.undo, so that only the
+     * values that cannot be reversed cheaply are restored here.
+     */
+    private void popUndo(UndoRecord undo) {
+        assert _zobrist == undo.zobrist;
+        _winner = undo.winner;
+        _winnerKnown = undo.winnerKnown;
     }
 
     /**
@@ -297,28 +721,33 @@ class Board {
      */
     boolean isLegal(Square from, Square to) {
         if (from.isValidMove(to) && !blocked(from, to)) {
-            int pieces = 1;
-            for (int step = 1;
-                 from.moveDest(from.direction(to), step) != null; step++) {
-                if (_board[from.moveDest(from.direction(to), step).index()]
-                        != EMP) {
-                    pieces++;
-                }
-            }
-            for (int step = 1;
-                 from.moveDest((from.direction(to) + 4) % 8, step) != null;
-                 step++) {
-                if (_board[from.moveDest((from.direction(to) + 4)
-                        % 8, step).index()]
-                        != EMP) {
-                    pieces++;
-                }
+            int pieces = lineCount(from, from.direction(to));
+            if ((occupied() & from.bit()) == 0) {
+                pieces += 1;
             }
             return pieces == from.distance(to);
         }
         return false;
     }
 
+    /**
+     * Return the number of pieces of either color on the line through SQ
+     * in direction DIR (as for Square.moveDest), counting both senses of
+     * DIR and SQ itself.
+     */
+    int lineCount(Square sq, int dir) {
+        switch (dir & 3) {
+        case 0:
+            return _colCounts[sq.col()];
+        case 1:
+            return _diagCounts[sq.diagonal()];
+        case 2:
+            return _rowCounts[sq.row()];
+        default:
+            return _antiCounts[sq.antidiagonal()];
+        }
+    }
+
     /**
      * Return true iff MOVE is legal for the player currently on move.
      * The isCapture() property is ignored.
@@ -336,19 +765,65 @@ class Board {
             turn = turn();
         }
         List<Move> legal = new ArrayList<>();
-        for (Square from : ALL_SQUARES) {
-            if (_board[from.index()] == turn) {
-                for (Square to : ALL_SQUARES) {
-                    Move move = Move.mv(from, to);
-                    if (from.isValidMove(to) && isLegal(move)) {
-                        legal.add(move);
-                    }
-                }
+        for (long own = pieces(turn); own != 0; own &= own - 1) {
+            Square from = ALL_SQUARES[Long.numberOfTrailingZeros(own)];
+            for (long dests = destinations(from); dests != 0;
+                 dests &= dests - 1) {
+                Square to = ALL_SQUARES[Long.numberOfTrailingZeros(dests)];
+                legal.add(Move.mv(from, to));
             }
         }
         return legal;
     }
 
+    /**
+     * Replace the contents of MOVES with all legal moves for TURN (the
+     * player on move if TURN is null) from this position, in the same
+     * order as legalMoves(TURN), without allocating.
+     */
+    void legalMoves(Piece turn, MoveList moves) {
+        if (turn == null) {
+            turn = turn();
+        }
+        moves.clear();
+        long opponents = pieces(turn.opposite());
+        for (long own = pieces(turn); own != 0; own &= own - 1) {
+            Square from = ALL_SQUARES[Long.numberOfTrailingZeros(own)];
+            for (long dests = destinations(from); dests != 0;
+                 dests &= dests - 1) {
+                Square to = ALL_SQUARES[Long.numberOfTrailingZeros(dests)];
+                moves.add(MoveList.pack(from, to,
+                        (opponents & to.bit()) != 0));
+            }
+        }
+    }
+
+    /**
+     * Return the bitboard of the Squares to which the piece on FROM may
+     * legally move (0 if FROM is empty).
+     */
+    long destinations(Square from) {
+        long own, opponents;
+        if ((_whiteBits & from.bit()) != 0) {
+            own = _whiteBits;
+            opponents = _blackBits;
+        } else if ((_blackBits & from.bit()) != 0) {
+            own = _blackBits;
+            opponents = _whiteBits;
+        } else {
+            return 0;
+        }
+        long result = 0;
+        for (int dir = 0; dir < 8; dir += 1) {
+            Square to = from.moveDest(dir, lineCount(from, dir));
+            if (to != null && (own & to.bit()) == 0
+                    && (opponents & from.between(to)) == 0) {
+                result |= to.bit();
+            }
+        }
+        return result;
+    }
+
     /**
      * Return true iff the game is over (either player has all his
      * pieces continguous or there is a tie).
@@ -361,7 +836,7 @@ class Board {
      * Return true iff SIDE's pieces are continguous.
      */
     boolean piecesContiguous(Piece side) {
-        return getRegionSizes(side).size() == 1;
+        return eulerNumber(side) <= 1 && regions(side).count() == 1;
     }
 
     /**
@@ -403,12 +878,13 @@ class Board {
     @Override
     public boolean equals(Object obj) {
         Board b = (Board) obj;
-        return Arrays.deepEquals(_board, b._board) && _turn == b._turn;
+        return _zobrist == b._zobrist && _whiteBits == b._whiteBits
+                && _blackBits == b._blackBits && _turn == b._turn;
     }
 
     @Override
     public int hashCode() {
-        return Arrays.deepHashCode(_board) * 2 + _turn.hashCode();
+        return Long.hashCode(_zobrist);
     }
 
     @Override
@@ -454,100 +930,39 @@ class Board {
      * piece or by a friendly piece on the target square.
      */
     private boolean blocked(Square from, Square to) {
-        if (_board[from.index()] != EMP
-                && _board[from.index()] == _board[to.index()]) {
-            return true;
-        }
-        for (int step = 1; step < from.distance(to); step++) {
-            if (_board[from.moveDest(from.direction(to), step).index()]
-                    == _board[from.index()].opposite()) {
-                return true;
-            }
-        }
-        return false;
+        Piece mover = get(from);
+        long own = pieces(mover), opponents = pieces(mover.opposite());
+        return (own & to.bit()) != 0 || (opponents & from.between(to)) != 0;
 
     }
 
     /**
-     * Return the size of the as-yet unvisited cluster of squares
-     * containing P at and adjacent to SQ.  VISITED indicates squares that
-     * have already been processed or are in different clusters.  Update
-     * VISITED to reflect squares counted.
-     * @param region List of Square
-     * @param p Pieces
-     * @param sq Square
-     * @param visited visited boolean array
-     * @return return size of region
+     * Return the sizes of all the regions in the current union-find
+     * structure for side S.
      */
-    private int numContig(Square sq, boolean[][] visited,
-                          Piece p, HashSet<Square> region) {
-        int size = p == _board[sq.index()] ? 1 : 0;
-        if (p == _board[sq.index()]) {
-            region.add(sq);
-        }
-        visited[sq.row()][sq.col()] = true;
-        for (Square adjacentSq : sq.adjacent()) {
-            if (!visited[adjacentSq.row()][adjacentSq.col()]) {
-                visited[adjacentSq.row()][adjacentSq.col()] = true;
-                if (p == _board[adjacentSq.index()]) {
-                    size += numContig(adjacentSq, visited, p, region);
-                }
-            }
+    List<Integer> getRegionSizes(Piece s) {
+        Connectivity regions = regions(s);
+        List<Integer> sizes = new ArrayList<>(regions.count());
+        for (int k = 0; k < regions.count(); k += 1) {
+            sizes.add(regions.size(k));
         }
-        return size;
+        return sizes;
     }
 
     /**
-     * Set the values of _whiteRegionSizes and _blackRegionSizes.
+     * Return the up-to-date regions of side S.
      */
-    private void computeRegions() {
-        if (_subsetsInitialized) {
-            return;
-        }
-        _whiteRegionSizes.clear();
-        _blackRegionSizes.clear();
-        _blackRegions.clear();
-        _whiteRegions.clear();
-        boolean[][] visited = new boolean[BOARD_SIZE][BOARD_SIZE];
-        for (Square sq : ALL_SQUARES) {
-            if (!visited[sq.row()][sq.col()]) {
-                HashSet<Square> region = new HashSet<>();
-                int cluster = numContig(sq, visited, WP, region);
-                if (cluster > 0) {
-                    _whiteRegionSizes.add(cluster);
-                    _whiteRegions.add(region);
-                }
-            }
-        }
-        visited = new boolean[BOARD_SIZE][BOARD_SIZE];
-        for (Square sq : ALL_SQUARES) {
-            if (!visited[sq.row()][sq.col()]) {
-                HashSet<Square> region = new HashSet<>();
-                int cluster = numContig(sq, visited, BP, region);
-                if (cluster > 0) {
-                    _blackRegionSizes.add(cluster);
-                    _blackRegions.add(region);
-                }
-            }
-        }
-        _whiteRegionSizes.sort(reverseOrder());
-        _blackRegionSizes.sort(reverseOrder());
-        _whiteRegions.sort(reverseOrder(new SizeComparator()));
-        _blackRegions.sort(reverseOrder(new SizeComparator()));
-        _subsetsInitialized = true;
+    Connectivity regions(Piece s) {
+        Connectivity regions = connectivity(s);
+        regions.refresh(pieces(s));
+        return regions;
     }
 
     /**
-     * Return the sizes of all the regions in the current union-find
-     * structure for side S.
+     * Return the region structure of side S, which may be stale.
      */
-    List<Integer> getRegionSizes(Piece s) {
-        computeRegions();
-        if (s == WP) {
-            return _whiteRegionSizes;
-        } else {
-            return _blackRegionSizes;
-        }
+    private Connectivity connectivity(Piece s) {
+        return s == WP ? _whiteConnectivity : _blackConnectivity;
     }
 
     /**
@@ -561,36 +976,24 @@ class Board {
     }
 
     /**
-     * Return the how much centrated the pieces are of a particular regionlist.
+     * Return how concentrated the pieces of PLAYER are, recording their
+     * center of mass.
      *
-     * @param regionslist List of List of Pieces.
      * @param player      Player.
      **/
-    public double concentration(ArrayList<HashSet<Square>> regionslist,
-                              Piece player) {
-        int c = 0, r = 0, pieces = 0;
-        for (HashSet<Square> list : regionslist) {
-            for (Square sq : list) {
-                c += sq.col();
-                r += sq.row();
-                pieces++;
-            }
-        }
-        c = c / pieces;
-        r = r / pieces;
+    public double concentration(Piece player) {
+        long own = pieces(player);
+        int k = player == WP ? 0 : 1, pieces = _pieceCounts[k];
+        int c = _colSums[k] / pieces, r = _rowSums[k] / pieces;
         Square centerofmass = sq(c, r);
         if (player == WP) {
             _whitecenterofmass = centerofmass;
-            _whitepieces = pieces;
         } else {
             _blackcenterofmass = centerofmass;
-            _blackpieces = pieces;
         }
         double distance = 0;
-        for (HashSet<Square> list : regionslist) {
-            for (Square sq : list) {
-                distance += sq.distance(centerofmass);
-            }
+        for (int d = 1; d < BOARD_SIZE; d += 1) {
+            distance += d * Long.bitCount(own & centerofmass.ring(d));
         }
         int outer = pieces > 9 ? pieces - 9 : 0;
         distance -= pieces - 1 + outer;
@@ -598,23 +1001,35 @@ class Board {
     }
 
     /**
-     * Return how the distribution of pieces in region list.
+     * Return the distribution of the pieces of PLAYER: the number of
+     * Squares outside the smallest rectangle containing them.
      *
-     * @param regionslist List of List of Pieces.
+     * @param player Player.
      **/
-    public int distribution(ArrayList<HashSet<Square>> regionslist) {
-        int c1 = 0, r1 = 0, c2 = 8, r2 = 8;
-        for (HashSet<Square> list : regionslist) {
-            for (Square sq : list) {
-                c1 = Math.max(sq.col(), c1);
-                r1 = Math.max(sq.row(), r1);
-                c2 = Math.min(sq.col(), c2);
-                r2 = Math.min(sq.row(), r2);
-            }
-        }
-        int r = r1 - r2 + 1;
-        int c = c1 - c2 + 1;
-        return 64 - (r * c);
+    public int distribution(Piece player) {
+        return distribution(pieces(player));
+    }
+
+    /**
+     * Return the distribution of the pieces on the non-empty bitboard
+     * PIECES, as for distribution(Piece).  The occupied rows and columns
+     * are found by folding PIECES onto its first column and its first
+     * row; the extent of each is the span of the set bits.
+     */
+    static int distribution(long pieces) {
+        long rows = pieces | (pieces >>> 4);
+        rows |= rows >>> 2;
+        rows |= rows >>> 1;
+        rows &= FILE_A;
+        long cols = pieces | (pieces >>> 32);
+        cols |= cols >>> 16;
+        cols |= cols >>> 8;
+        cols &= (1L << BOARD_SIZE) - 1;
+        int height = (Long.SIZE - 1 - Long.numberOfLeadingZeros(rows)
+                - Long.numberOfTrailingZeros(rows)) / BOARD_SIZE + 1;
+        int width = Long.SIZE - Long.numberOfLeadingZeros(cols)
+                - Long.numberOfTrailingZeros(cols);
+        return NUM_SQUARES - height * width;
     }
 
 
@@ -622,59 +1037,53 @@ class Board {
      * Score of pieces of a particular playe on baord.
      * Near center more score, edge negative, edge double negative
      *
-     * @param regionslist List of List of Pieces.
+     * @param player Player.
      * @return Baordscore based on position of pieces;
      **/
-    public double boardscore(ArrayList<HashSet<Square>> regionslist) {
-        double score = 0, pieces = 0;
-        for (HashSet<Square> list : regionslist) {
-            for (Square sq : list) {
-                if (sq.isEdge()) {
-                    score += -2;
-                    if (sq.isCorner()) {
-                        score += -6;
-                    }
-                } else {
-                    int distance = Math.min(Math.min(sq.distance(sq(3, 3)),
-                            sq.distance(sq(4, 4))),
-                            Math.min(sq.distance(sq(4, 3)),
-                                    sq.distance(sq(3, 4))));
-                    score += distance == 0 ? 5 : distance == 1 ? 3 : 1;
-                }
-                pieces++;
-            }
-        }
+    public double boardscore(Piece player) {
+        int k = player == WP ? 0 : 1;
+        double score = _placeScores[k], pieces = _pieceCounts[k];
         return (score * 10) / pieces;
     }
 
 
     /**
-     * Mobility Score.
+     * Mobility Score: the number of legal moves of PLAYER, counting a
+     * capture twice, a move to an edge Square as half, and a move from
+     * an edge Square to an edge Square as a quarter.  Computed from the
+     * destination bitboards of each piece, without generating moves.
      *
      * @param player Player.
      * @return Score of mobility with waited moves.
      **/
     public double mobility(Piece player) {
-        List<Move> legal = legalMoves(player);
+        long opponents = pieces(player.opposite());
         double mobility = 0;
-        for (Move move : legal) {
-            double start = 1;
-            if (_board[move.getTo().index()] == player.opposite()) {
-                start *= 2;
-            }
-            if (move.getTo().isEdge()) {
-                start *= 0.5;
-                if (move.getFrom().isEdge()) {
-                    start *= 0.5;
-                }
-            }
-            mobility += start;
+        for (long own = pieces(player); own != 0; own &= own - 1) {
+            Square from = ALL_SQUARES[Long.numberOfTrailingZeros(own)];
+            long dests = destinations(from), captures = dests & opponents;
+            double edge = (EDGE_SQUARES & from.bit()) != 0 ? 0.25 : 0.5;
+            mobility += Long.bitCount(dests & ~EDGE_SQUARES)
+                    + Long.bitCount(captures & ~EDGE_SQUARES)
+                    + edge * (Long.bitCount(dests & EDGE_SQUARES)
+                            + Long.bitCount(captures & EDGE_SQUARES));
         }
-        int piece = _board[legal.get(0).getFrom().index()] == WP ? _whitepieces
-                : _blackpieces;
         return mobility;
     }
 
+    /**
+     * Return the number of legal moves of PLAYER, without generating
+     * them.
+     */
+    int moveCount(Piece player) {
+        int count = 0;
+        for (long own = pieces(player); own != 0; own &= own - 1) {
+            count += Long.bitCount(
+                    destinations(ALL_SQUARES[Long.numberOfTrailingZeros(own)]));
+        }
+        return count;
+    }
+
     /**
      * Position of center of mass of player score.
      *
@@ -688,113 +1097,98 @@ class Board {
         } else {
             com = _blackcenterofmass;
         }
+        return compos(com);
+    }
+
+    /**
+     * Return the score for a center of mass on COM used by compos.
+     */
+    static int compos(Square com) {
         if (com.isEdge()) {
             return 10;
         }
-        return Math.min(Math.min(com.distance(sq(3, 3)),
-                com.distance(sq(4, 4))),
-                Math.min(com.distance(sq(4, 3)),
-                        com.distance(sq(3, 4))));
+        return com.centrality();
     }
 
     /**
-     * Return the avg distnace of every square in other clusters to the
-     * largest cluster. It assumes there are atlest 2 clusters, cause if
-     * there is 1, someone wins and is already cut off at find move function
+     * Return the number of steps after which PLAYER's regions, each
+     * growing at every step by the Squares adjacent to it, would all have
+     * met: 0 if PLAYER's pieces are contiguous, and otherwise roughly half
+     * the widest gap that separates them.  Obstacles are ignored.  The
+     * growth of all the regions at once is just the repeated dilation of
+     * PLAYER's bitboard, and they have met when that is one region.
      *
-     * @param regionslist List of List of Pieces.
+     * @param player Player.
      **/
-    public double potential(ArrayList<HashSet<Square>> regionslist) {
-        double total = 0;
-        HashSet<Square> approch = new HashSet<>();
-        for (Square from : regionslist.get(0)) {
-            for (Square adjacent : from.adjacent()) {
-                if (_board[adjacent.index()] != _board[from.index()]) {
-                    approch.add(adjacent);
-                }
-            }
+    public int connectDistance(Piece player) {
+        long grown = pieces(player);
+        int steps = 0;
+        while (grown != 0
+                && Connectivity.fill(grown & -grown, grown) != grown) {
+            grown = Connectivity.dilate(grown);
+            steps += 1;
         }
-        for (Square from : approch) {
-            for (int i = 1; i < regionslist.size(); i++) {
-                double avg = 0;
-                for (Square to : regionslist.get(i)) {
-                    avg += from.distance(to);
-                    if (from.isValidMove(to) && blocked(from, to)) {
-                        avg += 5;
-                    }
-                }
-                total += avg / (approch.size() * regionslist.get(i).size());
-            }
-        }
-        return total;
+        return steps;
     }
 
 
-    /**
-     * set viseted true.
-     *
-     * @param visited boolean array
-     * @param s1  square1
-     * @param s2  square2
-     */
-    private void setvisited(boolean[][] visited, Square s1, Square s2) {
-        visited[s1.index()][s2.index()] = visited[s1.index()][s2.index()]
-                = true;
-    }
-
     /**
      * Score of pieces of a particular player which form stronghold position
-     * on baord.
+     * on baord: pieces within distance 2 of the center of mass that have
+     * two or three friendly neighbors among those in one of the
+     * orientations north/north-east/east, east/south-east/south, or
+     * south/south-west/west.  Each such cluster scores 5 (three
+     * neighbors) or 3 (two), and a neighbor counted with one piece is not
+     * counted again in a cluster with the same piece.  Pieces are taken in
+     * order of index.
      *
-     * @param regionslist List of List of Pieces.
      * @param player the one we are looking strongholds for.
      * @return score based on no of stronghold;
      **/
-    public int stronghold(ArrayList<HashSet<Square>> regionslist,
-                           Piece player) {
-        int score = 0;
+    public int stronghold(Piece player) {
+        long own = pieces(player);
         Square com = player == WP
                 ? _whitecenterofmass : _blackcenterofmass;
-        boolean[][] visited
-                = new boolean[BOARD_SIZE * BOARD_SIZE][BOARD_SIZE * BOARD_SIZE];
-        for (HashSet<Square> list : regionslist) {
-            if (list.size() > 2) {
-                for (Square sq : list) {
-                    if (sq.distance(com) <= 2) {
-                        for (int i = 0; i < 8; i += 2) {
-                            Square s1 = sq.moveDest(i, 1);
-                            Square s2 = sq.moveDest(i + 1, 1);
-                            Square s3 = sq.moveDest(i + 2, 1);
-                            if (s1 == null || s2 == null || s3 == null
-                                    || visited[sq.index()][s1.index()]
-                                    || visited[sq.index()][s2.index()]
-                                    || visited[sq.index()][s3.index()]
-                                    || visited[s1.index()][sq.index()]
-                                    || visited[s2.index()][sq.index()]
-                                    || visited[s3.index()][sq.index()]) {
-                                continue;
-                            }
-                            if (list.contains(s1) && list.contains(s3)
-                                    && list.contains(s2)) {
-                                setvisited(visited, s1, sq);
-                                setvisited(visited, s2, sq);
-                                setvisited(visited, s3, sq);
-                                score += 5;
-                            } else if (list.contains(s1) && list.contains(s2)) {
-                                setvisited(visited, s1, sq);
-                                setvisited(visited, s2, sq);
-                                score += 3;
-                            } else if (list.contains(s1) && list.contains(s3)) {
-                                setvisited(visited, s1, sq);
-                                setvisited(visited, s3, sq);
-                                score += 3;
-                            } else if (list.contains(s2) && list.contains(s3)) {
-                                setvisited(visited, s3, sq);
-                                setvisited(visited, s2, sq);
-                                score += 3;
-                            }
-                        }
-                    }
+        long[] pairs = _strongholdPairs;
+        Arrays.fill(pairs, 0);
+        int score = 0;
+        for (long centers = own & (com.ring(0) | com.ring(1) | com.ring(2));
+             centers != 0; centers &= centers - 1) {
+            int sq = Long.numberOfTrailingZeros(centers);
+            long bit = 1L << sq;
+            for (int i = 0; i < 6; i += 2) {
+                if ((STRONGHOLD_CENTERS[i >> 1] & bit) == 0
+                        || ((pairs[i] | pairs[i + 1] | pairs[i + 2]) & bit)
+                        != 0) {
+                    continue;
+                }
+                long b1 = 1L << (sq + step(i)),
+                        b2 = 1L << (sq + step(i + 1)),
+                        b3 = 1L << (sq + step(i + 2));
+                if ((pairs[(i + 4) & 7] & b1) != 0
+                        || (pairs[(i + 5) & 7] & b2) != 0
+                        || (pairs[(i + 6) & 7] & b3) != 0) {
+                    continue;
+                }
+                boolean in1 = (own & b1) != 0, in2 = (own & b2) != 0,
+                        in3 = (own & b3) != 0;
+                if (in1 && in2 && in3) {
+                    pairs[i] |= bit;
+                    pairs[i + 1] |= bit;
+                    pairs[i + 2] |= bit;
+                    score += 5;
+                } else if (in1 && in2) {
+                    pairs[i] |= bit;
+                    pairs[i + 1] |= bit;
+                    score += 3;
+                } else if (in1 && in3) {
+                    pairs[i] |= bit;
+                    pairs[i + 2] |= bit;
+                    score += 3;
+                } else if (in2 && in3) {
+                    pairs[i + 1] |= bit;
+                    pairs[i + 2] |= bit;
+                    score += 3;
                 }
             }
         }
@@ -803,131 +1197,153 @@ class Board {
 
     /**
      * Score of pieces of a particular player for avergave connections of each
-     * pieces.
+     * pieces: twice the number of adjacent pairs of PLAYER's pieces, per
+     * piece.
      *
-     * @param regionslist List of List of Pieces.
+     * @param player Player.
      * @return score based on no of stronghold;
      **/
-    public double connections(ArrayList<HashSet<Square>> regionslist) {
-        double score = 0, pieces = 0;
-        for (HashSet<Square> list : regionslist) {
-            if (list.size() > 2) {
-                for (Square from : list) {
-                    for (Square to : list) {
-                        if (from.distance(to) == 1) {
-                            score++;
-                        }
-                    }
-                }
-            } else if (list.size() == 2) {
-                score += list.size();
-            }
-            pieces += list.size();
-        }
+    public double connections(Piece player) {
+        long own = pieces(player);
+        double score = 2 * adjacentPairs(own);
+        double pieces = Long.bitCount(own);
         return score / pieces;
     }
 
+    /**
+     * Return the number of pairs of adjacent (horizontally, vertically,
+     * or diagonally) Squares in the bitboard PIECES.
+     */
+    static int adjacentPairs(long pieces) {
+        return Long.bitCount(pieces & (pieces << 1) & ~FILE_A)
+                + Long.bitCount(pieces & (pieces << BOARD_SIZE))
+                + Long.bitCount(pieces & (pieces << (BOARD_SIZE + 1)) & ~FILE_A)
+                + Long.bitCount(pieces & (pieces << (BOARD_SIZE - 1))
+                        & ~FILE_H);
+    }
+
     /**
      * Score of pieces of a particular player which are walled on the
-     * on baord.
+     * on baord: for each of PLAYER's corner pieces, 4 if the opponent
+     * holds the diagonally adjacent Square, plus 1 for each of the other
+     * two adjacent Squares the opponent holds.
      *
-     * @param regionslist List of List of Pieces.
+     * @param player Player.
      * @return score based on no of stronghold;
      **/
-    public int walled(ArrayList<HashSet<Square>> regionslist) {
-        int score = 0;
-        for (HashSet<Square> list : regionslist) {
-            for (Square sq : list) {
-                if (sq.isCorner()) {
-                    for (Square adj : sq.adjacent()) {
-                        if (_board[adj.index()]
-                                == _board[sq.index()].opposite()) {
-                            if (adj.row() != sq.row()
-                                    && adj.col() != sq.col()) {
-                                score += 4;
-                            } else {
-                                score += 1;
-                            }
-                        }
-                    }
-                } else if (sq.isEdge()) {
-                    for (Square adj : sq.adjacent()) {
-                        int front = 0, corner = 0, number = 0;
-                        if (_board[adj.index()]
-                                == _board[sq.index()].opposite()) {
-                            if (adj.row() != sq.row()
-                                    && adj.col() != sq.col()) {
-                                corner++;
-                            } else if (!adj.isEdge()) {
-                                front++;
-                            } else {
-                                number++;
-                            }
-                        }
-                        if (corner + front + number > 1) {
-                            score += corner + front;
-                            score += corner + number == 4 ? 6 : corner + number;
-                        }
-                    }
-                }
-            }
+    public int walled(Piece player) {
+        return walled(pieces(player), pieces(player.opposite()));
+    }
+
+    /**
+     * Return the walled score of the pieces on the bitboard OWN against
+     * opposing pieces on OPPONENTS, as for walled(Piece).
+     */
+    static int walled(long own, long opponents) {
+        long corners = own & CORNER_SQUARES;
+        if (corners == 0) {
+            return 0;
+        }
+        long west = (opponents << 1) & ~FILE_A,
+                east = (opponents >>> 1) & ~FILE_H;
+        long diagonal = (west << BOARD_SIZE) | (west >>> BOARD_SIZE)
+                | (east << BOARD_SIZE) | (east >>> BOARD_SIZE);
+        return 4 * Long.bitCount(corners & diagonal)
+                + Long.bitCount(corners & west) + Long.bitCount(corners & east)
+                + Long.bitCount(corners & (opponents << BOARD_SIZE))
+                + Long.bitCount(corners & (opponents >>> BOARD_SIZE));
+    }
+
+    /**
+     * Return the part of the heuristic value that depends only on the
+     * pieces of PLAYER, taking it from the current thread's EvalCache
+     * when possible.
+     */
+    private double partialScore(Piece player) {
+        EvalCache cache = EvalCache.current();
+        long key = pieces(player);
+        double score = cache.get(key);
+        if (Double.isNaN(score)) {
+            score = WEIGHTS[2] * (concentration(player));
+            score += WEIGHTS[3] * (boardscore(player));
+            score += WEIGHTS[4] * (compos(player));
+            score += WEIGHTS[6] * (stronghold(player));
+            score += WEIGHTS[7] * (connections(player));
+            score += WEIGHTS[8] * (distribution(player));
+            score -= WEIGHTS[9] * (connectDistance(player));
+            cache.put(key, score);
         }
         return score;
     }
 
     /**
      * board heuristic.
-     * value += WEIGHTS[9] * (b * potential(_blackRegions)
-     *                 - a * walled(_whiteRegions));
      * @return value.
      **/
     public int heuristicValue() {
-        computeRegions();
-        double value = WEIGHTS[0];
-        int a = 1, b = 1;
-        if (turn() == BP) {
-            value *= -1;
-            a = 1;
-            b = 1;
-        }
-        if (_whitePartial.containsKey(_whiteRegions.hashCode())) {
-            value += a * _whitePartial.get(_whiteRegions.hashCode());
-        } else {
-            _whitePartial.clear();
-            double whitescore =  WEIGHTS[2]
-                    * (concentration(_whiteRegions, WP));
-            whitescore += WEIGHTS[3] * (boardscore(_whiteRegions));
-            whitescore += WEIGHTS[4] * (compos(WP));
-            whitescore += WEIGHTS[6] * (stronghold(_whiteRegions, WP));
-            whitescore += WEIGHTS[7] * (connections(_whiteRegions));
-            whitescore += WEIGHTS[8] * (distribution(_whiteRegions));
-            value += a * whitescore;
-            _whitePartial.put(_whiteRegions.hashCode(), whitescore);
-        }
-        if (_blackPartial.containsKey(_blackRegions.hashCode())) {
-            value -= b * _blackPartial.get(_blackRegions.hashCode());
-        } else {
-            _blackPartial.clear();
-            double blackscore = WEIGHTS[2] * (concentration(_blackRegions, BP));
-            blackscore += WEIGHTS[3] * (boardscore(_blackRegions));
-            blackscore += WEIGHTS[4] * (compos(BP));
-            blackscore += WEIGHTS[6] * (stronghold(_blackRegions, BP));
-            blackscore += WEIGHTS[7] * (connections(_blackRegions));
-            blackscore += WEIGHTS[8] * (distribution(_blackRegions));
-            value -= b * blackscore;
-            _blackPartial.put(_blackRegions.hashCode(), blackscore);
-        }
-        value += WEIGHTS[1] * (a * mobility(WP) - b * mobility(BP));
-        value += WEIGHTS[5] * (walled(_blackRegions) - walled(_whiteRegions));
+        return heuristicValue(Integer.MIN_VALUE, Integer.MAX_VALUE);
+    }
+
+    /**
+     * Return the heuristic value of this position if it lies strictly
+     * between ALPHA and BETA.  Otherwise, return a value that is no
+     * greater than ALPHA if the heuristic value is, or no less than BETA
+     * if it is.  The per-color scores are computed first; mobility and
+     * walled are computed only while their largest possible contribution
+     * could still bring the value into the window.
+     */
+    int heuristicValue(int alpha, int beta) {
+        double value = turn() == BP ? -WEIGHTS[0] : WEIGHTS[0];
+        value += partialScore(WP);
+        value -= partialScore(BP);
+        double walledUp = WEIGHTS[5] * MAX_CORNER_WALLED
+                * Long.bitCount(_blackBits & CORNER_SQUARES),
+                walledDown = WEIGHTS[5] * MAX_CORNER_WALLED
+                        * Long.bitCount(_whiteBits & CORNER_SQUARES);
+        double whiteUp = WEIGHTS[1] * MAX_PIECE_MOBILITY
+                * Long.bitCount(_whiteBits),
+                blackDown = WEIGHTS[1] * MAX_PIECE_MOBILITY
+                        * Long.bitCount(_blackBits);
+        int bound = outside(value + whiteUp + walledUp,
+                value - blackDown - walledDown, alpha, beta);
+        if (bound != NO_BOUND) {
+            return bound;
+        }
+        double whiteMobility = mobility(WP);
+        whiteUp = WEIGHTS[1] * whiteMobility;
+        bound = outside(value + whiteUp + walledUp,
+                value + whiteUp - blackDown - walledDown, alpha, beta);
+        if (bound != NO_BOUND) {
+            return bound;
+        }
+        value += WEIGHTS[1] * (whiteMobility - mobility(BP));
+        value += WEIGHTS[5] * (walled(BP) - walled(WP));
 
         return (int) value;
     }
 
-    /** Comparator to sort ArrayList of ArrayList of pieces on basis of size. */
-    static class SizeComparator implements Comparator<Set<Square>> {
-        @Override
-        public int compare(Set<Square> o1, Set<Square> o2) {
-            return Integer.compare(o1.size(), o2.size());
+    /**
+     * Return the heuristic value, as an int, of UPPER if it is no greater
+     * than ALPHA, or of LOWER if it is no less than BETA, and otherwise
+     * NO_BOUND.  UPPER and LOWER are bounds on the unrounded value.
+     */
+    private static int outside(double upper, double lower,
+                               int alpha, int beta) {
+        if ((int) upper <= alpha) {
+            return (int) upper;
+        } else if ((int) lower >= beta) {
+            return (int) lower;
         }
+        return NO_BOUND;
+    }
+
+    /** The derived state saved by makeMove for retract to restore. */
+    private static final class UndoRecord {
+        /** Zobrist key. */
+        private long zobrist;
+        /** Cached winner, as in _winner. */
+        private Piece winner;
+        /** True iff winner is valid, as in _winnerKnown. */
+        private boolean winnerKnown;
     }
 }
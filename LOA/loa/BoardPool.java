@@ -0,0 +1,72 @@
+package loa;
+
+import java.util.Arrays;
+
+/**
+ * A supply of scratch Boards for searches and other work that needs a
+ * private copy of a position.  Each thread has its own pool, obtained
+ * with BoardPool.current(), so no synchronization is needed; a Board
+ * acquired from a pool must be released to the same pool, by the same
+ * thread, once it is no longer in use.  Boards are reused rather than
+ * allocated afresh for each copy.
+ *
+ * @author Amogh
+ */
+final class BoardPool {
+
+    /**
+     * Return the pool belonging to the current thread.
+     */
+    static BoardPool current() {
+        return POOLS.get();
+    }
+
+    /**
+     * Return a Board from this pool set to a copy of SOURCE, as for
+     * Board.copyFrom.
+     */
+    Board acquire(Board source) {
+        if (_free == 0) {
+            return new Board(source);
+        }
+        _free -= 1;
+        Board board = _boards[_free];
+        _boards[_free] = null;
+        board.copyFrom(source);
+        return board;
+    }
+
+    /**
+     * Return BOARD, which must have been acquired from this pool and not
+     * since released, to the pool for reuse.
+     */
+    void release(Board board) {
+        if (_free == _boards.length) {
+            _boards = Arrays.copyOf(_boards, 2 * _free);
+        }
+        _boards[_free] = board;
+        _free += 1;
+    }
+
+    /**
+     * Return the number of Boards available for reuse.
+     */
+    int available() {
+        return _free;
+    }
+
+    /**
+     * The pool of each thread.
+     */
+    private static final ThreadLocal<BoardPool> POOLS =
+            ThreadLocal.withInitial(BoardPool::new);
+
+    /**
+     * Boards available for reuse; the first _free entries are valid.
+     */
+    private Board[] _boards = new Board[4];
+    /**
+     * Number of Boards available for reuse.
+     */
+    private int _free;
+}
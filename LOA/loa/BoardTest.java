@@ -4,7 +4,12 @@ package loa;
 
 import org.junit.Test;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Random;
 
 import static loa.Move.mv;
 import static loa.Piece.*;
@@ -90,6 +95,44 @@ public class BoardTest {
 
 
 
+    /**
+     * A position in which black can connect only by capturing: a1-c1.
+     */
+    static final Piece[][] BOARD6 = {
+            {BP, EMP, WP, EMP, EMP, EMP, EMP, EMP},
+            {EMP, EMP, EMP, BP, EMP, EMP, EMP, EMP},
+            {EMP, EMP, EMP, EMP, EMP, EMP, EMP, EMP},
+            {EMP, EMP, EMP, EMP, EMP, EMP, EMP, EMP},
+            {EMP, EMP, EMP, EMP, EMP, EMP, EMP, EMP},
+            {EMP, EMP, EMP, EMP, EMP, EMP, EMP, WP},
+            {EMP, EMP, EMP, EMP, EMP, EMP, EMP, WP},
+            {EMP, EMP, EMP, EMP, EMP, EMP, EMP, EMP},
+    };
+
+    /**
+     * Positions in which black, on move, can force a connection within
+     * two of its moves but not in one.
+     */
+    static final Piece[][] BOARD7 = {
+            {EMP, WP, EMP, EMP, EMP, EMP, EMP, EMP},
+            {WP, EMP, EMP, EMP, EMP, BP, EMP, WP},
+            {EMP, EMP, EMP, EMP, EMP, EMP, BP, EMP},
+            {WP, EMP, EMP, EMP, EMP, EMP, EMP, EMP},
+            {EMP, EMP, EMP, BP, EMP, EMP, EMP, EMP},
+            {EMP, EMP, EMP, EMP, EMP, BP, BP, EMP},
+            {EMP, EMP, EMP, EMP, EMP, EMP, WP, EMP},
+            {WP, EMP, EMP, EMP, EMP, EMP, EMP, EMP},
+    }, BOARD8 = {
+            {EMP, EMP, BP, EMP, EMP, WP, EMP, EMP},
+            {EMP, EMP, EMP, BP, EMP, EMP, WP, EMP},
+            {EMP, BP, EMP, EMP, BP, WP, EMP, EMP},
+            {EMP, EMP, EMP, EMP, EMP, EMP, EMP, WP},
+            {EMP, EMP, EMP, EMP, EMP, EMP, EMP, EMP},
+            {WP, EMP, EMP, BP, EMP, WP, EMP, EMP},
+            {EMP, EMP, EMP, EMP, WP, EMP, EMP, EMP},
+            {EMP, EMP, EMP, EMP, EMP, EMP, EMP, WP},
+    };
+
     static final String BOARD1_STRING =
             "===\n"
                     + "    - b b b - b b - \n"
@@ -177,6 +220,301 @@ public class BoardTest {
                 0, b1.movesMade());
     }
 
+    @Test
+    public void testBitboards() {
+        Board b = new Board(BOARD1, BP);
+        assertEquals(12, Long.bitCount(b.pieces(WP)));
+        assertEquals(12, Long.bitCount(b.pieces(BP)));
+        assertEquals(0, b.pieces(WP) & b.pieces(BP));
+        b.makeMove(mv("f3-d5"));
+        assertEquals(sq("d5").bit(), b.pieces(BP) & sq("d5").bit());
+        assertEquals(0, b.occupied() & sq("f3").bit());
+        b.retract();
+        assertEquals(new Board(BOARD1, BP).pieces(BP), b.pieces(BP));
+    }
+
+    @Test
+    public void testLineCounts() {
+        Board b = new Board();
+        assertEquals(6, b.lineCount(sq("a1"), 0));
+        assertEquals(6, b.lineCount(sq("c1"), 2));
+        assertEquals(2, b.lineCount(sq("c4"), 1));
+        assertEquals(2, b.lineCount(sq("d4"), 7));
+        b.makeMove(mv("c1-c3"));
+        assertEquals(5, b.lineCount(sq("c1"), 2));
+        assertEquals(2, b.lineCount(sq("c1"), 4));
+        assertEquals(3, b.lineCount(sq("c3"), 2));
+        b.retract();
+        assertEquals(6, b.lineCount(sq("h1"), 6));
+        assertEquals(2, b.lineCount(sq("c1"), 4));
+    }
+
+    @Test
+    public void testZobrist() {
+        Board b0 = new Board(BOARD1, BP);
+        Board b1 = new Board(BOARD1, BP);
+        assertEquals(b0.zobristKey(), b1.zobristKey());
+        assertNotEquals(b0.zobristKey(), new Board(BOARD1, WP).zobristKey());
+        b1.makeMove(mv("f3-d5"));
+        assertNotEquals(b0.zobristKey(), b1.zobristKey());
+        Board b2 = new Board(BOARD1, BP);
+        b2.set(sq("f3"), EMP);
+        b2.set(sq("d5"), BP, WP);
+        assertEquals(b2.zobristKey(), b1.zobristKey());
+        b1.retract();
+        assertEquals(b0.zobristKey(), b1.zobristKey());
+    }
+
+    @Test
+    public void testNullMove() {
+        Board b = new Board(BOARD1, BP);
+        long key = b.zobristKey();
+        b.makeNullMove();
+        assertEquals(WP, b.turn());
+        assertEquals(0, b.movesMade());
+        assertEquals(new Board(BOARD1, WP).zobristKey(), b.zobristKey());
+        b.retractNullMove();
+        assertEquals(BP, b.turn());
+        assertEquals(key, b.zobristKey());
+    }
+
+    @Test
+    public void testRegions() {
+        Board b = new Board(BOARD1, BP);
+        List<Integer> sizes = b.getRegionSizes(BP);
+        assertEquals(List.of(3, 2, 2, 2, 1, 1, 1), sizes);
+        b.makeMove(mv("b1-b3"));
+        assertEquals(List.of(3, 2, 2, 2, 2, 1), b.getRegionSizes(BP));
+        b.makeMove(mv("a6-c4"));
+        assertEquals(List.of(3, 2, 2, 2, 1, 1), b.getRegionSizes(BP));
+        b.makeMove(mv("e3-c5"));
+        assertEquals(List.of(3, 2, 2, 1, 1, 1, 1), b.getRegionSizes(BP));
+        assertEquals(List.of(4, 2, 2, 2, 1), b.getRegionSizes(WP));
+        b.retract();
+        b.retract();
+        b.retract();
+        assertEquals(sizes, b.getRegionSizes(BP));
+    }
+
+    @Test
+    public void testEulerNumber() {
+        Board b = new Board(BOARD1, BP);
+        assertEquals(7, b.eulerNumber(BP));
+        assertEquals(1, new Board(BOARD2, BP).eulerNumber(BP));
+        b.makeMove(mv("b1-b3"));
+        assertEquals(6, b.eulerNumber(BP));
+        b.retract();
+        assertEquals(7, b.eulerNumber(BP));
+        b.set(sq("c4"), EMP);
+        assertEquals(6, b.eulerNumber(BP));
+    }
+
+    @Test
+    public void testRetractRestoresState() {
+        Board b = new Board(BOARD4, BP);
+        long key = b.zobristKey();
+        int value = b.heuristicValue();
+        assertFalse(b.gameOver());
+        b.makeMove(mv("b1-b4"));
+        assertEquals(BP, b.winner());
+        b.retract();
+        assertFalse(b.gameOver());
+        assertEquals(key, b.zobristKey());
+        assertEquals(value, b.heuristicValue());
+        assertEquals(List.of(4, 1), b.getRegionSizes(BP));
+    }
+
+    @Test
+    public void testCopy() {
+        Board b0 = new Board(BOARD1, BP);
+        b0.makeMove(mv("b1-b3"));
+        int value = b0.heuristicValue();
+        Board b1 = new Board(b0);
+        assertEquals(b0, b1);
+        assertEquals(1, b1.movesMade());
+        assertEquals(value, b1.heuristicValue());
+        assertEquals(b0.getRegionSizes(BP), b1.getRegionSizes(BP));
+        b1.retract();
+        assertEquals(new Board(BOARD1, BP), b1);
+        assertEquals(List.of(3, 2, 2, 2, 1, 1, 1), b1.getRegionSizes(BP));
+    }
+
+    @Test
+    public void testBoardPool() {
+        BoardPool pool = BoardPool.current();
+        Board source = new Board(BOARD2, BP);
+        Board b1 = pool.acquire(source);
+        assertEquals(source, b1);
+        pool.release(b1);
+        int free = pool.available();
+        Board b2 = pool.acquire(new Board(BOARD1, BP));
+        assertSame(b1, b2);
+        assertEquals(free - 1, pool.available());
+        assertEquals(new Board(BOARD1, BP), b2);
+        assertFalse(b2.gameOver());
+        pool.release(b2);
+    }
+
+    @Test
+    public void testEvalTerms() {
+        Board b = new Board(BOARD2, BP);
+        assertEquals(36, b.distribution(WP));
+        assertEquals(39, b.distribution(BP));
+        assertEquals(63, Board.distribution(sq("h8").bit()));
+        assertEquals(0, Board.distribution(sq("a1").bit() | sq("h8").bit()));
+        assertEquals(16.0 / 9, b.connections(WP), 1e-9);
+        assertEquals(20.0 / 9, b.connections(BP), 1e-9);
+        assertEquals(1.0 / 6, b.concentration(BP), 1e-9);
+        assertEquals(6, b.stronghold(BP));
+        assertEquals(0, b.walled(WP));
+    }
+
+    @Test
+    public void testConnectDistance() {
+        assertEquals(3, new Board().connectDistance(BP));
+        assertEquals(1, new Board(BOARD1, BP).connectDistance(WP));
+        assertEquals(0, new Board(BOARD2, BP).connectDistance(BP));
+    }
+
+    @Test
+    public void testMovePicker() {
+        Board b = new Board(BOARD1, BP);
+        MovePicker moves = new MovePicker();
+        moves.reset(b, MoveList.pack(sq("f3"), sq("d5"), false));
+        assertEquals(MoveList.pack(sq("f3"), sq("d5"), true), moves.next());
+        assertEquals(MovePicker.FIRST, moves.stage());
+        HashSet<String> seen = new HashSet<>();
+        seen.add("f3-d5");
+        boolean quiet = false;
+        for (int move = moves.next(); move != MovePicker.NO_MOVE;
+             move = moves.next()) {
+            assertTrue(seen.add(MoveList.toMove(move).toString()));
+            assertEquals(MoveList.isCapture(move),
+                    moves.stage() == MovePicker.CAPTURES);
+            assertFalse(quiet && MoveList.isCapture(move));
+            quiet = !MoveList.isCapture(move);
+        }
+        assertEquals(MovePicker.DONE, moves.stage());
+        HashSet<String> legal = new HashSet<>();
+        for (Move move : b.legalMoves(null)) {
+            legal.add(move.toString());
+        }
+        assertEquals(legal, seen);
+        int illegal = MoveList.pack(sq("f3"), sq("d1"), false);
+        moves.reset(b, illegal);
+        assertNotEquals(illegal, moves.next());
+    }
+
+    @Test
+    public void testMoveOrdering() {
+        Board b = new Board(BOARD1, BP);
+        int killer = MoveList.pack(sq("b1"), sq("b3"), false);
+        MoveHistory history = new MoveHistory(4);
+        history.cutoff(2, killer, 3);
+        assertEquals(killer, history.killer(2, 0));
+        assertEquals(9, history.score(killer));
+        MovePicker moves = new MovePicker();
+        moves.reset(b, MovePicker.NO_MOVE, history, 2);
+        int count = 0, lastStage = MovePicker.FIRST;
+        for (int move = moves.next(); move != MovePicker.NO_MOVE;
+             move = moves.next()) {
+            assertTrue(moves.stage() >= lastStage);
+            lastStage = moves.stage();
+            if (lastStage == MovePicker.KILLERS) {
+                assertEquals(killer, move);
+            }
+            count += 1;
+        }
+        assertEquals(b.legalMoves(null).size(), count);
+        history.newSearch();
+        assertEquals(MovePicker.NO_MOVE, history.killer(2, 0));
+        assertEquals(4, history.score(killer));
+    }
+
+    @Test
+    public void testRunningSums() {
+        Board b = new Board(BOARD1, BP);
+        double score = b.boardscore(BP), concentration = b.concentration(WP);
+        b.makeMove(mv("f3-d5"));
+        Board fresh = new Board(BOARD1, BP);
+        fresh.set(sq("f3"), EMP);
+        fresh.set(sq("d5"), BP, WP);
+        assertEquals(fresh.boardscore(BP), b.boardscore(BP), 0);
+        assertEquals(fresh.boardscore(WP), b.boardscore(WP), 0);
+        assertEquals(fresh.concentration(WP), b.concentration(WP), 0);
+        b.retract();
+        assertEquals(score, b.boardscore(BP), 0);
+        assertEquals(concentration, b.concentration(WP), 0);
+    }
+
+    @Test
+    public void testEvalCache() {
+        EvalCache cache = new EvalCache(1);
+        assertTrue(Double.isNaN(cache.get(5)));
+        cache.put(5, 1.5);
+        assertEquals(1.5, cache.get(5), 0);
+        cache.put(6, 2.5);
+        cache.put(7, 3.5);
+        assertEquals(3.5, cache.get(7), 0);
+        int found = 0;
+        for (long key = 5; key <= 6; key += 1) {
+            found += Double.isNaN(cache.get(key)) ? 0 : 1;
+        }
+        assertEquals(1, found);
+        assertEquals(3, cache.hits());
+        assertEquals(2, cache.misses());
+        Board b = new Board(BOARD1, BP);
+        int value = b.heuristicValue();
+        assertEquals(value, b.heuristicValue());
+        EvalCache.current().clear();
+        assertEquals(value, b.heuristicValue());
+        assertEquals(2, EvalCache.current().misses());
+    }
+
+    @Test
+    public void testLazyHeuristic() {
+        Board b = new Board(BOARD1, BP);
+        int value = b.heuristicValue();
+        assertEquals(value, b.heuristicValue(value - 1, value + 1));
+        assertTrue(b.heuristicValue(value + 100, value + 200) <= value + 100);
+        assertTrue(b.heuristicValue(value - 200, value - 100) >= value - 100);
+        assertTrue(b.heuristicValue(value, value + 1) <= value);
+    }
+
+    @Test
+    public void testGeometry() {
+        assertEquals(0, sq("e4").centrality());
+        assertEquals(2, sq("b6").centrality());
+        assertEquals(3, sq("h2").centrality());
+        assertEquals(5, sq("a1").distance(sq("c6")));
+        assertEquals(3, Long.bitCount(sq("a1").ring(1)));
+        assertEquals(16, Long.bitCount(sq("e4").ring(2)));
+        assertTrue(sq("h8").isCorner());
+        assertFalse(sq("h7").isCorner());
+    }
+
+    @Test
+    public void testMobility() {
+        for (Piece[][] contents : new Piece[][][] {
+            BOARD1, BOARD2, BOARD4, BOARD5 }) {
+            Board b = new Board(contents, BP);
+            for (Piece side : new Piece[] { WP, BP }) {
+                MoveList moves = new MoveList();
+                b.legalMoves(side, moves);
+                double expected = 0;
+                for (int k = 0; k < moves.size(); k += 1) {
+                    int move = moves.get(k);
+                    double weight = MoveList.isCapture(move) ? 2 : 1;
+                    if (MoveList.to(move).isEdge()) {
+                        weight *= MoveList.from(move).isEdge() ? 0.25 : 0.5;
+                    }
+                    expected += weight;
+                }
+                assertEquals(expected, b.mobility(side), 0);
+                assertEquals(moves.size(), b.moveCount(side));
+            }
+        }
+    }
 
     @Test
     public void tesLegal() {
@@ -185,4 +523,220 @@ public class BoardTest {
         assertEquals(36, legalMoves.size());
     }
 
+    @Test
+    public void testNetwork() throws IOException {
+        int hidden = 8;
+        Random random = new Random(42);
+        short[] biases = new short[hidden],
+                input = new short[Network.FEATURES * hidden],
+                output = new short[hidden];
+        for (int i = 0; i < input.length; i += 1) {
+            input[i] = (short) (random.nextInt(61) - 30);
+        }
+        for (int h = 0; h < hidden; h += 1) {
+            biases[h] = (short) random.nextInt(100);
+            output[h] = (short) (random.nextInt(201) - 100);
+        }
+        Network net = new Network(biases, input, output, 7, 2);
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        net.save(bytes);
+        Network copy = Network.load(
+                new ByteArrayInputStream(bytes.toByteArray()));
+
+        Board b = new Board(BOARD1, BP);
+        b.setNetwork(net);
+        int value = b.networkValue();
+        b.makeMove(mv("f3-d5"));
+        b.makeMove(mv("a2-c2"));
+        Board fresh = new Board(b);
+        fresh.setNetwork(copy);
+        assertEquals(fresh.networkValue(), b.networkValue());
+        assertEquals(b.networkValue(), new Board(b).networkValue());
+        b.retract();
+        b.retract();
+        assertEquals(value, b.networkValue());
+        b.initialize(BOARD1, BP);
+        assertEquals(value, b.networkValue());
+    }
+
+    @Test
+    public void testBatchEvaluator() {
+        Board[] boards = {
+            new Board(), new Board(BOARD1, BP), new Board(BOARD1, WP),
+            new Board(BOARD2, WP), new Board(BOARD3, BP)
+        };
+        int n = boards.length;
+        long[] white = new long[n], black = new long[n];
+        boolean[] whiteToMove = new boolean[n];
+        for (int i = 0; i < n; i += 1) {
+            white[i] = boards[i].pieces(WP);
+            black[i] = boards[i].pieces(BP);
+            whiteToMove[i] = boards[i].turn() == WP;
+        }
+        double[] values = new double[n];
+        new BatchEvaluator().evaluate(white, black, whiteToMove, values, n);
+        double[] w = Board.WEIGHTS;
+        for (int i = 0; i < n; i += 1) {
+            Board b = boards[i];
+            b.concentration(WP);
+            b.concentration(BP);
+            double expected = (b.turn() == WP ? w[0] : -w[0])
+                    + w[3] * (b.boardscore(WP) - b.boardscore(BP))
+                    + w[4] * (b.compos(WP) - b.compos(BP))
+                    + w[5] * (b.walled(BP) - b.walled(WP))
+                    + w[7] * (b.connections(WP) - b.connections(BP))
+                    + w[8] * (b.distribution(WP) - b.distribution(BP));
+            assertEquals(expected, values[i], 1e-9);
+        }
+    }
+
+    @Test
+    public void testTranspositionTable() {
+        TranspositionTable table = new TranspositionTable(1);
+        assertEquals(1 << 16, table.capacity());
+        long key = new Board().zobristKey(), other = key + table.capacity();
+        int move = MoveList.pack(sq("f3"), sq("d5"), true);
+        assertEquals(TranspositionTable.MISSING, table.probe(key));
+        table.store(key, 5, -1234, TranspositionTable.UPPER, move);
+        long entry = table.probe(key);
+        assertEquals(-1234, TranspositionTable.value(entry));
+        assertEquals(5, TranspositionTable.depth(entry));
+        assertEquals(TranspositionTable.UPPER, TranspositionTable.bound(entry));
+        assertEquals(move, TranspositionTable.move(entry));
+        table.store(other, 4, 0, TranspositionTable.EXACT,
+                MovePicker.NO_MOVE);
+        assertEquals(TranspositionTable.MISSING, table.probe(other));
+        table.newSearch();
+        table.store(other, 4, 0, TranspositionTable.EXACT,
+                MovePicker.NO_MOVE);
+        assertEquals(TranspositionTable.MISSING, table.probe(key));
+        entry = table.probe(other);
+        assertEquals(MovePicker.NO_MOVE, TranspositionTable.move(entry));
+        assertEquals(TranspositionTable.EXACT, TranspositionTable.bound(entry));
+    }
+
+    @Test
+    public void testSearchMatchesNegamax() {
+        Random random = new Random(7);
+        MachinePlayer player = new MachinePlayer();
+        player.setSelective(0);
+        for (int n = 0; n < 6; n += 1) {
+            Board b = new Board();
+            while (b.movesMade() < 8 + n) {
+                List<Move> moves = b.legalMoves(null);
+                b.makeMove(moves.get(random.nextInt(moves.size())));
+            }
+            if (b.gameOver()) {
+                continue;
+            }
+            int depth = 3 + n % 2;
+            int expected = negamax(b, depth, -Integer.MAX_VALUE,
+                    Integer.MAX_VALUE);
+            player.newSearch();
+            assertEquals(expected, player.findMove(b, depth, 0,
+                    -Integer.MAX_VALUE, Integer.MAX_VALUE, false));
+            player.newSearch();
+            assertEquals(expected, player.deepen(b, depth));
+        }
+    }
+
+    @Test
+    public void testQuiescence() {
+        MachinePlayer player = new MachinePlayer();
+        Board b = new Board(BOARD6, BP);
+        assertEquals(Integer.MAX_VALUE, player.quiesce(b, 1, 0,
+                -Integer.MAX_VALUE, Integer.MAX_VALUE));
+        b = new Board(BOARD6, WP);
+        player.newSearch();
+        player.setSelective(0);
+        int plain = player.findMove(b, 1, 0, -Integer.MAX_VALUE,
+                Integer.MAX_VALUE, false);
+        player.newSearch();
+        player.setSelective(MachinePlayer.QUIESCENCE);
+        assertTrue(player.findMove(b, 1, 0, -Integer.MAX_VALUE,
+                Integer.MAX_VALUE, false) < plain);
+        Connectivity regions = new Board(BOARD1, BP).regions(BP);
+        assertTrue(MachinePlayer.mayJoin(regions,
+                MoveList.pack(sq("b1"), sq("b3"), false)));
+        assertFalse(MachinePlayer.mayJoin(regions,
+                MoveList.pack(sq("g8"), sq("g7"), false)));
+    }
+
+    @Test
+    public void testNullMoveFindsWins() {
+        assertFindsWins(MachinePlayer.NULL_MOVE);
+    }
+
+    @Test
+    public void testReductionsFindWins() {
+        assertFindsWins(MachinePlayer.REDUCTIONS);
+    }
+
+    @Test
+    public void testFutilityFindsWins() {
+        assertFindsWins(MachinePlayer.FUTILITY);
+    }
+
+    /**
+     * Check that a search with the selective FEATURES finds black's
+     * forced connections, in one move from BOARD4 and BOARD6 and in two
+     * from BOARD7 and BOARD8, with the same (exact) value as a full-width
+     * search.  In BOARD4 and BOARD6, black is one move from connecting,
+     * so selective search must not be used; in BOARD7 and BOARD8, white
+     * can answer black's first move with a position in which null moves,
+     * reductions, and futility pruning all apply.
+     */
+    private static void assertFindsWins(int features) {
+        for (Piece[][] contents
+                 : new Piece[][][] { BOARD4, BOARD6, BOARD7, BOARD8 }) {
+            Board b = new Board(contents, BP);
+            int full = searchValue(b, 0, false);
+            assertEquals(Integer.MAX_VALUE, full);
+            assertEquals(full, searchValue(b, features, false));
+            assertEquals(full, searchValue(b, features, true));
+        }
+    }
+
+    /**
+     * Return the value of B for the player on move found by a new
+     * MachinePlayer with the selective FEATURES, searching 4 moves deep,
+     * by iterative deepening iff DEEPEN.
+     */
+    private static int searchValue(Board b, int features, boolean deepen) {
+        MachinePlayer player = new MachinePlayer();
+        player.setSelective(features);
+        player.newSearch();
+        if (deepen) {
+            return player.deepen(b, 4);
+        }
+        return player.findMove(b, 4, 0, -Integer.MAX_VALUE,
+                Integer.MAX_VALUE, false);
+    }
+
+    /**
+     * Return the value of B for the player on move, searched DEPTH moves
+     * ahead by plain alpha-beta negamax within ALPHA and BETA.
+     */
+    private static int negamax(Board b, int depth, int alpha, int beta) {
+        if (b.gameOver()) {
+            Piece winner = b.winner();
+            return winner == EMP ? 0
+                    : winner == b.turn() ? Integer.MAX_VALUE
+                    : -Integer.MAX_VALUE;
+        }
+        if (depth == 0) {
+            return b.turn() == WP ? b.heuristicValue() : -b.heuristicValue();
+        }
+        int best = -Integer.MAX_VALUE;
+        for (Move move : b.legalMoves(null)) {
+            b.makeMove(move);
+            best = Math.max(best, -negamax(b, depth - 1, -beta,
+                    -Math.max(alpha, best)));
+            b.retract();
+            if (best >= beta) {
+                break;
+            }
+        }
+        return best;
+    }
 }
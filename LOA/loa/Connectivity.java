@@ -0,0 +1,315 @@
+package loa;
+
+import java.util.Arrays;
+
+import static loa.Square.FILE_A;
+import static loa.Square.FILE_H;
+import static loa.Square.NUM_SQUARES;
+
+/**
+ * The contiguous regions formed by the pieces of one color, each held as
+ * a bitboard.  Regions are kept in order of decreasing size, and regions
+ * of equal size in order of their lowest-numbered Square, which is the
+ * order in which Board has always reported them.  Changes to the pieces
+ * are recorded as they are made and applied only when the regions are
+ * next needed; then only the regions touching the changed Squares are
+ * recomputed, and the recomputation is logged so that it can be rolled
+ * back when the changes are undone.
+ *
+ * @author Amogh
+ */
+final class Connectivity {
+
+    /**
+     * Return the bitboard of SQUARES together with all Squares adjacent
+     * (horizontally, vertically, or diagonally) to one of them.
+     */
+    static long dilate(long squares) {
+        long row = squares | ((squares << 1) & ~FILE_A)
+                | ((squares >>> 1) & ~FILE_H);
+        return row | (row << BOARD_WIDTH) | (row >>> BOARD_WIDTH);
+    }
+
+    /**
+     * Return the region of PIECES containing SEED, which must be a
+     * non-empty subset of PIECES.
+     */
+    static long fill(long seed, long pieces) {
+        long region = seed;
+        while (true) {
+            long grown = dilate(region) & pieces;
+            if (grown == region) {
+                return region;
+            }
+            region = grown;
+        }
+    }
+
+    /**
+     * Mark my regions as invalid, after the pieces they describe have
+     * been changed other than through record.  They will be recomputed
+     * from scratch by the next refresh.
+     */
+    void invalidate() {
+        _stale = true;
+        _numChanges = _applied = 0;
+        _logSize = 0;
+    }
+
+    /**
+     * Recompute all my regions from scratch for the bitboard PIECES,
+     * discarding any recorded changes.
+     */
+    void reset(long pieces) {
+        _count = 0;
+        _numChanges = _applied = 0;
+        _logSize = 0;
+        addRegions(pieces, false);
+        _stale = false;
+    }
+
+    /**
+     * Set my regions to those of OTHER, including any of its recorded
+     * changes that have not yet been applied, but none of its undo
+     * history.
+     */
+    void copyFrom(Connectivity other) {
+        _count = other._count;
+        System.arraycopy(other._masks, 0, _masks, 0, _count);
+        _numChanges = other._numChanges - other._applied;
+        if (_changes.length < _numChanges) {
+            _changes = new long[other._changes.length];
+        }
+        System.arraycopy(other._changes, other._applied, _changes, 0,
+                _numChanges);
+        _applied = 0;
+        _logSize = 0;
+        _stale = other._stale;
+    }
+
+    /**
+     * Record that the contents of the Squares in CHANGED have changed.
+     * The regions themselves are brought up to date lazily, by the next
+     * refresh.  Does nothing if I am already invalid.
+     */
+    void record(long changed) {
+        if (_stale) {
+            return;
+        }
+        if (_numChanges == _changes.length) {
+            _changes = Arrays.copyOf(_changes, 2 * _numChanges);
+        }
+        _changes[_numChanges] = changed;
+        _numChanges += 1;
+    }
+
+    /**
+     * Undo the last change recorded by record, restoring my regions to
+     * what they were before it if they had been refreshed since.  If
+     * there is no such change (because I was reset or invalidated
+     * since), become invalid instead.
+     */
+    void undo() {
+        if (_stale) {
+            return;
+        }
+        if (_numChanges == 0) {
+            invalidate();
+            return;
+        }
+        if (_applied == _numChanges) {
+            rollback();
+        }
+        _numChanges -= 1;
+    }
+
+    /**
+     * Bring my regions up to date for PIECES, the current bitboard of my
+     * color, applying all changes recorded since the last refresh.  Only
+     * regions that lost a Square, or that border a Square that was
+     * gained, are recomputed.
+     */
+    void refresh(long pieces) {
+        if (_stale) {
+            reset(pieces);
+            return;
+        }
+        if (_applied == _numChanges) {
+            return;
+        }
+        long changed = 0;
+        for (int i = _applied; i < _numChanges; i += 1) {
+            changed |= _changes[i];
+        }
+        long removed = changed & ~pieces, added = changed & pieces;
+        long touched = removed | dilate(added);
+        long affected = added;
+        int nRemoved = 0;
+        for (int k = 0; k < _count; ) {
+            long region = _masks[k];
+            if ((region & touched) != 0) {
+                affected |= region;
+                log(region);
+                nRemoved += 1;
+                remove(k);
+            } else {
+                k += 1;
+            }
+        }
+        int nAdded = addRegions(affected & pieces, true);
+        log(((long) _applied << Integer.SIZE)
+                | (nRemoved << HALF_SHIFT) | nAdded);
+        _applied = _numChanges;
+    }
+
+    /**
+     * Undo the last refresh that applied changes, leaving the changes it
+     * applied unapplied.
+     */
+    private void rollback() {
+        _logSize -= 1;
+        long header = _log[_logSize];
+        int nAdded = (int) header & HALF_MASK,
+                nRemoved = ((int) header >>> HALF_SHIFT) & HALF_MASK;
+        for (int a = 0; a < nAdded; a += 1) {
+            _logSize -= 1;
+            long region = _log[_logSize];
+            int k = 0;
+            while (_masks[k] != region) {
+                k += 1;
+            }
+            remove(k);
+        }
+        for (int r = 0; r < nRemoved; r += 1) {
+            _logSize -= 1;
+            insert(_log[_logSize]);
+        }
+        _applied = (int) (header >>> Integer.SIZE);
+    }
+
+    /**
+     * Return the number of regions.
+     */
+    int count() {
+        return _count;
+    }
+
+    /**
+     * Return the bitboard of my Kth region, 0 <= K < count().
+     */
+    long region(int k) {
+        return _masks[k];
+    }
+
+    /**
+     * Return the number of Squares in my Kth region, 0 <= K < count().
+     */
+    int size(int k) {
+        return Long.bitCount(_masks[k]);
+    }
+
+    /**
+     * Insert the regions of PIECES into my list, also pushing each on the
+     * undo log iff LOGGED, and return how many there were.
+     */
+    private int addRegions(long pieces, boolean logged) {
+        int n = 0;
+        while (pieces != 0) {
+            long region = fill(pieces & -pieces, pieces);
+            pieces &= ~region;
+            insert(region);
+            if (logged) {
+                log(region);
+            }
+            n += 1;
+        }
+        return n;
+    }
+
+    /**
+     * Insert REGION into _masks, preserving the order of regions.
+     */
+    private void insert(long region) {
+        int k = _count;
+        while (k > 0 && precedes(region, _masks[k - 1])) {
+            _masks[k] = _masks[k - 1];
+            k -= 1;
+        }
+        _masks[k] = region;
+        _count += 1;
+    }
+
+    /**
+     * Remove my Kth region, preserving the order of the others.
+     */
+    private void remove(int k) {
+        System.arraycopy(_masks, k + 1, _masks, k, _count - k - 1);
+        _count -= 1;
+    }
+
+    /**
+     * Return true iff region R1 is to be listed before R2: it is larger,
+     * or the same size with a lower-numbered first Square.
+     */
+    private static boolean precedes(long r1, long r2) {
+        int s1 = Long.bitCount(r1), s2 = Long.bitCount(r2);
+        return s1 > s2 || (s1 == s2 && Long.numberOfTrailingZeros(r1)
+                < Long.numberOfTrailingZeros(r2));
+    }
+
+    /**
+     * Push VALUE on the undo log.
+     */
+    private void log(long value) {
+        if (_logSize == _log.length) {
+            _log = Arrays.copyOf(_log, 2 * _logSize);
+        }
+        _log[_logSize] = value;
+        _logSize += 1;
+    }
+
+    /**
+     * Number of Squares in a row.
+     */
+    private static final int BOARD_WIDTH = Square.BOARD_SIZE;
+    /**
+     * Field width and mask of the region counts in a log header.
+     */
+    private static final int HALF_SHIFT = 16, HALF_MASK = (1 << 16) - 1;
+
+    /**
+     * My regions, in order; the first _count entries are valid.
+     */
+    private final long[] _masks = new long[NUM_SQUARES];
+    /**
+     * Number of regions.
+     */
+    private int _count;
+    /**
+     * True iff _masks must be recomputed from scratch before use.
+     */
+    private boolean _stale = true;
+    /**
+     * The Squares changed by each recorded change, oldest first.
+     */
+    private long[] _changes = new long[NUM_SQUARES];
+    /**
+     * Number of recorded changes.
+     */
+    private int _numChanges;
+    /**
+     * Number of recorded changes reflected in _masks.
+     */
+    private int _applied;
+    /**
+     * Undo log.  Each refresh that applies changes pushes the regions it
+     * removed, then the regions it added, then a header holding the
+     * value _applied had before it (upper 32 bits) and the numbers of
+     * regions removed and added.
+     */
+    private long[] _log = new long[NUM_SQUARES];
+    /**
+     * Number of valid entries in _log.
+     */
+    private int _logSize;
+}
@@ -0,0 +1,126 @@
+package loa;
+
+import java.util.Arrays;
+
+/**
+ * A fixed-size cache of the partial heuristic scores of single colors,
+ * keyed by the bitboard of that color's pieces.  Those scores depend on
+ * nothing else, and the same arrangement of one color recurs constantly
+ * among the positions of a search, under different arrangements of the
+ * other.  The cache is direct-mapped: each key has one slot, chosen by
+ * a multiplicative hash of the key, and a new entry always replaces the
+ * one in its slot.  Since the full key is stored, a lookup never returns
+ * the score of a different arrangement.  Each thread has its own cache,
+ * obtained with EvalCache.current().
+ *
+ * @author Amogh
+ */
+final class EvalCache {
+
+    /**
+     * The value returned by get for a key that is not in the cache.
+     */
+    static final double MISSING = Double.NaN;
+
+    /**
+     * A cache with 2**LOGSIZE slots.
+     */
+    EvalCache(int logSize) {
+        _shift = Long.SIZE - logSize;
+        _keys = new long[1 << logSize];
+        _values = new double[1 << logSize];
+    }
+
+    /**
+     * Return the cache belonging to the current thread.
+     */
+    static EvalCache current() {
+        return CACHES.get();
+    }
+
+    /**
+     * Return the score cached for KEY, a non-empty bitboard, or MISSING
+     * if there is none.
+     */
+    double get(long key) {
+        int slot = slot(key);
+        if (_keys[slot] == key) {
+            _hits += 1;
+            return _values[slot];
+        }
+        _misses += 1;
+        return MISSING;
+    }
+
+    /**
+     * Cache VALUE as the score for KEY, a non-empty bitboard, replacing
+     * whatever entry occupied its slot.
+     */
+    void put(long key, double value) {
+        int slot = slot(key);
+        _keys[slot] = key;
+        _values[slot] = value;
+    }
+
+    /**
+     * Remove all entries and reset the counters.
+     */
+    void clear() {
+        Arrays.fill(_keys, 0);
+        _hits = _misses = 0;
+    }
+
+    /**
+     * Return the number of calls to get that found their key.
+     */
+    long hits() {
+        return _hits;
+    }
+
+    /**
+     * Return the number of calls to get that did not find their key.
+     */
+    long misses() {
+        return _misses;
+    }
+
+    /**
+     * Return the slot for KEY.
+     */
+    private int slot(long key) {
+        return (int) ((key * HASH_MULTIPLIER) >>> _shift);
+    }
+
+    /**
+     * Default number of slots (log 2) of each thread's cache.
+     */
+    static final int DEFAULT_LOG_SIZE = 16;
+
+    /**
+     * Multiplier of the slot hash (2**64 divided by the golden ratio).
+     */
+    private static final long HASH_MULTIPLIER = 0x9e3779b97f4a7c15L;
+
+    /**
+     * The cache of each thread.
+     */
+    private static final ThreadLocal<EvalCache> CACHES =
+            ThreadLocal.withInitial(() -> new EvalCache(DEFAULT_LOG_SIZE));
+
+    /**
+     * Shift that reduces a hashed key to a slot number.
+     */
+    private final int _shift;
+    /**
+     * The key held in each slot (0 if the slot is empty).
+     */
+    private final long[] _keys;
+    /**
+     * The score held in each slot.
+     */
+    private final double[] _values;
+    /**
+     * Lookup counters.
+     */
+    private long _hits, _misses;
+}
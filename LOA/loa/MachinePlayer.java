@@ -1,8 +1,6 @@
 /* Skeleton Copyright (C) 2015, 2020 Paul N. Hilfinger and the Regents of the
  * University of California.  All rights reserved. */
 package loa;
-import java.util.List;
-
 import static loa.Piece.*;
 
 /** An automated Player.
@@ -15,6 +13,30 @@ class MachinePlayer extends Player {
     private static final int WINNING_VALUE = Integer.MAX_VALUE - 20;
     /** A magnitude greater than a normal value. */
     private static final int INFTY = Integer.MAX_VALUE;
+    /** Features of the selective search (see setSelective). */
+    static final int NULL_MOVE = 1, REDUCTIONS = 2, FUTILITY = 4,
+            QUIESCENCE = 8;
+    /** Maximum number of moves searched by quiesce. */
+    private static final int QUIESCENCE_DEPTH = 4;
+    /** Region count at or below which selective search is not used. */
+    private static final int NEAR_WIN_REGIONS = 2;
+    /** Least depth at which a null move is tried. */
+    private static final int NULL_MOVE_DEPTH = 3;
+    /** Depth beyond which the null-move search is reduced by 3 rather
+     *  than 2. */
+    private static final int NULL_MOVE_DEEP = 6;
+    /** Least depth at which late moves are reduced. */
+    private static final int REDUCTION_DEPTH = 3;
+    /** Number of moves searched at full depth before any is reduced. */
+    private static final int REDUCTION_MOVES = 3;
+    /** Largest gain in static value assumed for a quiet move at depth 1
+     *  (more than 99% of moves gain less). */
+    private static final int FUTILITY_MARGIN = 1000;
+    /** The first depth searched with an aspiration window. */
+    private static final int ASPIRATION_DEPTH = 3;
+    /** Initial distance from the previous value to either end of an
+     *  aspiration window. */
+    private static final int ASPIRATION_WINDOW = 500;
 
     /** A new MachinePlayer with no piece or controller (intended to produce
      *  a template). */
@@ -22,9 +44,27 @@ class MachinePlayer extends Player {
         this(null, null);
     }
 
+    /** A new MachinePlayer template with no piece or controller that
+     *  evaluates positions with NETWORK, or with the hand-weighted
+     *  heuristic if NETWORK is null. */
+    MachinePlayer(Network network) {
+        this(null, null, network);
+    }
+
     /** A MachinePlayer that plays the SIDE pieces in GAME. */
     MachinePlayer(Piece side, Game game) {
+        this(side, game, null);
+    }
+
+    /** A MachinePlayer that plays the SIDE pieces in GAME, evaluating
+     *  positions with NETWORK, or with the hand-weighted heuristic if
+     *  NETWORK is null. */
+    MachinePlayer(Piece side, Game game, Network network) {
         super(side, game);
+        _network = network;
+        for (int ply = 0; ply < MAX_PLY; ply += 1) {
+            _pickers[ply] = new MovePicker();
+        }
     }
 
     @Override
@@ -38,7 +78,9 @@ class MachinePlayer extends Player {
 
     @Override
     Player create(Piece piece, Game game) {
-        return new MachinePlayer(piece, game);
+        MachinePlayer player = new MachinePlayer(piece, game, _network);
+        player.setSelective(_selective);
+        return player;
     }
 
     @Override
@@ -50,26 +92,14 @@ class MachinePlayer extends Player {
      *  from the current position. Assumes the game is not over. */
     private Move searchForMove() {
         long n1 = System.currentTimeMillis();
-        Board work = new Board(getBoard());
-        int value;
-        assert side() == work.turn();
-        _foundMove = null;
-        _maxdepth = chooseDepth();
-        if (_maxdepth < 1) {
-            findMove(work, _maxdepth, true, 1, -INFTY, INFTY);
-        } else {
-            for (int depth = 1; depth <= _maxdepth; depth++) {
-                if (side() == WP) {
-                    value = findMove(work, depth, true,
-                            1, -INFTY, INFTY);
-                } else {
-                    value = findMove(work, depth, true,
-                            -1, -INFTY, INFTY);
-                }
-                if (WINNING_VALUE < (side() == WP ? value : -value)) {
-                    break;
-                }
-            }
+        BoardPool pool = BoardPool.current();
+        Board work = pool.acquire(getBoard());
+        work.setNetwork(_network);
+        newSearch();
+        try {
+            search(work);
+        } finally {
+            pool.release(work);
         }
         if (side() == BP) {
             long n2 = System.currentTimeMillis();
@@ -80,56 +110,342 @@ class MachinePlayer extends Player {
         return _foundMove;
     }
 
-    /** Find a move from position BOARD and return its value, recording
-     *  the move found in _foundMove iff SAVEMOVE. The move
-     *  should have maximal value or have value > BETA if SENSE==1,
-     *  and minimal value or value < ALPHA if SENSE==-1. Searches up to
-     *  DEPTH levels.  Searching at level 0 simply returns a static estimate
-     *  of the board value and does not set _foundMove. If the game is over
-     *  on BOARD, does not set _foundMove. */
-    private int findMove(Board board, int depth, boolean saveMove,
-                         int sense, int alpha, int beta) {
+    /** Prepare for a search from a new position: age the transposition
+     *  table and the move history, and forget the last move found. */
+    void newSearch() {
+        if (_table == null) {
+            _table = new TranspositionTable(TABLE_MEGABYTES);
+        }
+        _table.newSearch();
+        _history.newSearch();
+        _foundMove = null;
+    }
+
+    /** Search for a move from WORK, a scratch copy of the current
+     *  position, setting _foundMove. */
+    private void search(Board work) {
+        assert side() == work.turn();
+        _maxdepth = chooseDepth();
+        if (_maxdepth < 1) {
+            randomMove(work);
+        } else {
+            deepen(work, _maxdepth);
+        }
+    }
+
+    /** Set _foundMove to a move chosen at random from the legal moves in
+     *  BOARD. */
+    private void randomMove(Board board) {
+        board.legalMoves(null, _randomMoves);
+        _foundMove = MoveList.toMove(
+                _randomMoves.get(getGame().randInt(_randomMoves.size())));
+    }
+
+    /** Search BOARD to depths 1 through MAXDEPTH in turn, stopping early
+     *  if a win is found, and return the value of the last search for
+     *  the player on move, setting _foundMove.  After the first few
+     *  depths, each search starts with a window around the value of the
+     *  one before. */
+    int deepen(Board board, int maxDepth) {
+        int value = 0;
+        for (int depth = 1; depth <= maxDepth; depth += 1) {
+            if (depth < ASPIRATION_DEPTH || Math.abs(value) >= WINNING_VALUE) {
+                value = findMove(board, depth, 0, -INFTY, INFTY, false);
+            } else {
+                value = aspirate(board, depth, value);
+            }
+            if (value > WINNING_VALUE) {
+                break;
+            }
+        }
+        return value;
+    }
+
+    /** Search BOARD to depth DEPTH with a window of ASPIRATION_WINDOW
+     *  on either side of GUESS, widening the window on the side where
+     *  the search fails and repeating until the value lies within it.
+     *  Return the value, setting _foundMove. */
+    private int aspirate(Board board, int depth, int guess) {
+        int delta = ASPIRATION_WINDOW;
+        int alpha = Math.max(-INFTY, guess - delta),
+            beta = Math.min(INFTY, guess + delta);
+        while (true) {
+            int value = findMove(board, depth, 0, alpha, beta, false);
+            if (value <= alpha && alpha > -INFTY) {
+                alpha = (int) Math.max(-INFTY, (long) value - delta);
+            } else if (value >= beta && beta < INFTY) {
+                beta = (int) Math.min(INFTY, (long) value + delta);
+            } else {
+                return value;
+            }
+            delta = (int) Math.min(INFTY, 2L * delta);
+        }
+    }
+
+    /** Return the value of BOARD for the player on move, searching DEPTH
+     *  moves ahead by principal variation search, PLY moves below the
+     *  root (the position at which the search started).  The value is
+     *  exact if it lies strictly between ALPHA and BETA; otherwise it is
+     *  an upper bound on the true value if it is no greater than ALPHA,
+     *  and a lower bound if it is no less than BETA.  The first move at
+     *  each node is searched with the full window; the rest are first
+     *  searched with an empty window just above ALPHA, which suffices to
+     *  show that they are no better, and are searched again only if they
+     *  are.  Outside the principal variation, the search is selective as
+     *  described at setSelective, trying a null move only if NULLOK.  At
+     *  the root, sets _foundMove to the best move found.  Searching at
+     *  depth 0 or less returns the value of a quiescence search. */
+    int findMove(Board board, int depth, int ply, int alpha,
+                 int beta, boolean nullOK) {
         if (board.gameOver()) {
-            return board.winner() == EMP ? 0
-                    : board.winner() == WP ? INFTY : -INFTY;
-        }
-        if (depth == 0) {
-            return board.heuristicValue();
-        }
-        if (depth == -1) {
-            List<Move> legalMoves =  board.legalMoves(null);
-            _foundMove = legalMoves.get(getGame().randInt(legalMoves.size()));
-            board.makeMove(_foundMove);
-            return board.heuristicValue();
-        }
-        List<Move> legalMoves =  board.legalMoves(null);
-        int bestValue = -INFTY;
-        Move bestSoFar = legalMoves.get(0);
-        for (Move legal : legalMoves) {
-            board.makeMove(legal);
-            int current =
-                    sense * findMove(board, depth - 1,
-                            false, -sense, alpha, beta);
+            return finalValue(board);
+        }
+        if (depth <= 0) {
+            if ((_selective & QUIESCENCE) != 0) {
+                return quiesce(board, QUIESCENCE_DEPTH, ply, alpha, beta);
+            }
+            return staticValue(board, alpha, beta);
+        }
+        boolean root = ply == 0;
+        long key = board.zobristKey();
+        long entry = _table.probe(key);
+        int first = MovePicker.NO_MOVE;
+        if (entry != TranspositionTable.MISSING) {
+            int stored = TranspositionTable.value(entry);
+            if (!root && TranspositionTable.depth(entry) >= depth) {
+                switch (TranspositionTable.bound(entry)) {
+                case TranspositionTable.EXACT:
+                    return stored;
+                case TranspositionTable.LOWER:
+                    if (stored >= beta) {
+                        return stored;
+                    }
+                    break;
+                default:
+                    if (stored <= alpha) {
+                        return stored;
+                    }
+                    break;
+                }
+            }
+            first = TranspositionTable.move(entry);
+        }
+        if (root && _foundMove != null) {
+            first = MoveList.pack(_foundMove.getFrom(), _foundMove.getTo(),
+                    false);
+        }
+
+        boolean selective = !root && beta - alpha == 1
+                && Math.abs(beta) < WINNING_VALUE && !nearWin(board);
+        boolean nullMove = selective && nullOK && depth >= NULL_MOVE_DEPTH
+                && (_selective & NULL_MOVE) != 0;
+        boolean futility = selective && depth == 1
+                && (_selective & FUTILITY) != 0;
+        int estimate = nullMove || futility
+                ? staticValue(board, -INFTY, INFTY) : 0;
+        if (nullMove && estimate >= beta) {
+            int reduction = depth > NULL_MOVE_DEEP ? 3 : 2;
+            board.makeNullMove();
+            int value = -findMove(board, Math.max(1, depth - 1 - reduction),
+                    ply + 1, -beta, -beta + 1, false);
+            board.retractNullMove();
+            if (value >= beta) {
+                return value > WINNING_VALUE ? beta : value;
+            }
+        }
+        futility = futility && estimate + FUTILITY_MARGIN <= alpha;
+        boolean reduce = selective && depth >= REDUCTION_DEPTH
+                && (_selective & REDUCTIONS) != 0;
+
+        int alpha0 = alpha;
+        MovePicker moves = _pickers[ply];
+        moves.reset(board, first, _history, ply);
+        int bestValue = -INFTY, bestMove = MovePicker.NO_MOVE, tried = 0;
+        for (int move = moves.next(); move != MovePicker.NO_MOVE;
+             move = moves.next()) {
+            boolean quiet = !MoveList.isCapture(move)
+                    && moves.stage() != MovePicker.FIRST;
+            if (futility && quiet && bestMove != MovePicker.NO_MOVE) {
+                bestValue = Math.max(bestValue, estimate + FUTILITY_MARGIN);
+                continue;
+            }
+            board.makeMove(MoveList.toMove(move));
+            int value;
+            if (bestMove == MovePicker.NO_MOVE) {
+                value = -findMove(board, depth - 1, ply + 1,
+                        -beta, -alpha, true);
+            } else {
+                int reduction = reduce && tried >= REDUCTION_MOVES
+                        && moves.stage() == MovePicker.QUIETS ? 1 : 0;
+                value = -findMove(board, depth - 1 - reduction, ply + 1,
+                        -alpha - 1, -alpha, true);
+                if (reduction > 0 && value > alpha) {
+                    value = -findMove(board, depth - 1, ply + 1,
+                            -alpha - 1, -alpha, true);
+                }
+                if (value > alpha && value < beta) {
+                    value = -findMove(board, depth - 1, ply + 1,
+                            -beta, -alpha, true);
+                }
+            }
             board.retract();
+            tried += 1;
 
-            if (current >= bestValue) {
-                bestSoFar = legal;
-                bestValue = current;
-                if (sense == -1) {
-                    beta = Math.min(beta, sense * current);
-                } else {
-                    alpha = Math.max(alpha, current);
+            if (value > bestValue || bestMove == MovePicker.NO_MOVE) {
+                bestValue = value;
+                bestMove = move;
+                if (value > alpha) {
+                    alpha = value;
+                    if (alpha >= beta) {
+                        _history.cutoff(ply, move, depth);
+                        break;
+                    }
                 }
-                if (beta <= alpha) {
+            }
+        }
+        if (root) {
+            _foundMove = MoveList.toMove(bestMove);
+        }
+        _table.store(key, depth, bestValue,
+                bestValue <= alpha0 ? TranspositionTable.UPPER
+                : bestValue >= beta ? TranspositionTable.LOWER
+                : TranspositionTable.EXACT, bestMove);
+        return bestValue;
+    }
+
+    /** Return the value of BOARD for the player on move, with the same
+     *  meaning relative to ALPHA and BETA as for findMove, found by
+     *  searching only the moves that change the position sharply:
+     *  captures, and at the first move (when DEPTH is QUIESCENCE_DEPTH),
+     *  also moves that reduce the number of the mover's regions.  The
+     *  player on move may also stand pat, taking the static value, which
+     *  bounds the value from below; so the search ends as soon as that
+     *  is at least BETA, and also at the end of DEPTH further moves.
+     *  PLY is the number of moves below the root. */
+    int quiesce(Board board, int depth, int ply, int alpha,
+                int beta) {
+        if (board.gameOver()) {
+            return finalValue(board);
+        }
+        int bestValue = staticValue(board, alpha, beta);
+        if (bestValue >= beta || depth == 0 || ply >= MAX_PLY - 1) {
+            return bestValue;
+        }
+        alpha = Math.max(alpha, bestValue);
+        Piece mover = board.turn();
+        boolean joins = depth == QUIESCENCE_DEPTH;
+        int regions = joins ? board.regions(mover).count() : 0;
+        MovePicker moves = _pickers[ply];
+        moves.reset(board, MovePicker.NO_MOVE);
+        for (int move = moves.next(); move != MovePicker.NO_MOVE;
+             move = moves.next()) {
+            boolean capture = MoveList.isCapture(move);
+            if (!capture) {
+                if (!joins) {
                     break;
                 }
+                if (!mayJoin(board.regions(mover), move)) {
+                    continue;
+                }
+            }
+            board.makeMove(MoveList.toMove(move));
+            if (!capture && board.regions(mover).count() >= regions) {
+                board.retract();
+                continue;
+            }
+            int value = -quiesce(board, depth - 1, ply + 1, -beta, -alpha);
+            board.retract();
+            if (value > bestValue) {
+                bestValue = value;
+                if (value > alpha) {
+                    alpha = value;
+                    if (alpha >= beta) {
+                        break;
+                    }
+                }
             }
         }
-        if (saveMove) {
-            _foundMove = bestSoFar;
+        return bestValue;
+    }
+
+    /** Return true if the quiet packed MOVE might reduce the number of
+     *  REGIONS of the mover's pieces: that is, if at least two of them
+     *  either touch the destination (apart from the piece moved) or
+     *  consist of the piece moved alone.  The test is cheap and admits
+     *  every move that joins regions, but also some that split as many
+     *  as they join. */
+    static boolean mayJoin(Connectivity regions, int move) {
+        long from = MoveList.from(move).bit(),
+            near = Connectivity.dilate(MoveList.to(move).bit()) & ~from;
+        int touched = 0;
+        for (int k = 0; k < regions.count(); k += 1) {
+            long region = regions.region(k);
+            if ((region & near) != 0 || region == from) {
+                touched += 1;
+            }
         }
-        return sense * bestValue;
+        return touched >= 2;
+    }
 
+    /** Return true iff either side in BOARD has its pieces in at most
+     *  NEAR_WIN_REGIONS regions, so that a move or two might connect
+     *  them.  Selective search is unsafe in such positions: passing, or
+     *  pruning a quiet move, may miss a win or a loss. */
+    private static boolean nearWin(Board board) {
+        return nearWin(board, WP) || nearWin(board, BP);
+    }
+
+    /** Return true iff SIDE in BOARD has its pieces in at most
+     *  NEAR_WIN_REGIONS regions.  Since the Euler number of SIDE's pieces
+     *  is their number of regions less their number of holes, the
+     *  regions are counted only if it is small enough. */
+    private static boolean nearWin(Board board, Piece side) {
+        return board.eulerNumber(side) <= NEAR_WIN_REGIONS
+                && board.regions(side).count() <= NEAR_WIN_REGIONS;
+    }
+
+    /** Set the features of the selective search to FEATURES, a union of
+     *  NULL_MOVE, REDUCTIONS, FUTILITY, and QUIESCENCE (0 for a
+     *  full-width search that ends in static values).  The first three
+     *  apply only to nodes searched with an empty window (those off the
+     *  principal variation), not at the root, and not in positions where
+     *  a win is at hand:
+     *    NULL_MOVE: at depth NULL_MOVE_DEPTH or more, if the static value
+     *    is at least BETA, first let the opponent move twice in a row in
+     *    a search 2 or 3 moves shallower, but at least 1 move deep, so
+     *    that a connecting move by the opponent is always seen; if that
+     *    still fails high, so does the node.
+     *    REDUCTIONS: at depth REDUCTION_DEPTH or more, search quiet moves
+     *    after the first REDUCTION_MOVES one move shallower, at full
+     *    depth again only if they fail high.
+     *    FUTILITY: at depth 1, if the static value plus FUTILITY_MARGIN is
+     *    no more than ALPHA, skip quiet moves after the first.
+     *  QUIESCENCE applies at all nodes of depth 0, which are valued by
+     *  quiesce rather than by their static values. */
+    void setSelective(int features) {
+        _selective = features;
+    }
+
+    /** Return the value for the player on move of BOARD, on which the
+     *  game is over. */
+    private static int finalValue(Board board) {
+        Piece winner = board.winner();
+        return winner == EMP ? 0 : winner == board.turn() ? INFTY : -INFTY;
+    }
+
+    /** Return the static value of BOARD for the player on move, from the
+     *  network if I have one and otherwise from BOARD.heuristicValue,
+     *  which need be exact only if it lies strictly between ALPHA and
+     *  BETA. */
+    private int staticValue(Board board, int alpha, int beta) {
+        int sense = board.turn() == WP ? 1 : -1;
+        if (_network != null) {
+            return sense * board.networkValue();
+        }
+        if (sense == 1) {
+            return board.heuristicValue(alpha, beta);
+        }
+        return -board.heuristicValue(-beta, -alpha);
     }
 
     /** Return a search depth for the current position. */
@@ -148,7 +464,7 @@ class MachinePlayer extends Player {
         }
         if (getBoard().movesMade() >= HALFGAME) {
             if ((getBoard().repeatMove()
-                    || getBoard().legalMoves(null).size() <= HANDEL)
+                    || getBoard().moveCount(getBoard().turn()) <= HANDEL)
                     && (_depth < 8)) {
                 _depth += 1;
             }
@@ -156,8 +472,28 @@ class MachinePlayer extends Player {
         return _depth;
     }
 
+    /** Evaluator of leaf positions, or null for the hand-weighted
+     *  heuristic. */
+    private final Network _network;
+    /** Features of the selective search in use. */
+    private int _selective = NULL_MOVE | REDUCTIONS | FUTILITY | QUIESCENCE;
+    /** Results of earlier searches, shared by all the searches of this
+     *  player, or null before the first. */
+    private TranspositionTable _table;
+    /** Size of _table in megabytes. */
+    private static final int TABLE_MEGABYTES = 16;
     /** Used to convey moves discovered by findMove. */
     private Move _foundMove;
+    /** Maximum number of plies below the root that findMove may reach. */
+    private static final int MAX_PLY = 64;
+    /** Staged move generators for findMove, indexed by ply below the
+     *  root.  At the root, the move found by the previous iteration is
+     *  tried first. */
+    private final MovePicker[] _pickers = new MovePicker[MAX_PLY];
+    /** Killers and history scores for ordering the moves of findMove. */
+    private final MoveHistory _history = new MoveHistory(MAX_PLY);
+    /** Move buffer for choosing a random move. */
+    private final MoveList _randomMoves = new MoveList();
     /** depth.*/
     private int _depth = 4;
     /** maxDDepth for that minmax. */
@@ -46,7 +46,7 @@ public class Main {
         CommandArgs options =
                 new CommandArgs(
                         "--debug=(\\d+){0,1} --display{0,1} --strict{0,1} "
-                        + "--log={0,1} --=(.*){0,2}",
+                        + "--log={0,1} --weights={0,1} --=(.*){0,2}",
                         args);
 
         if (!options.ok()) {
@@ -122,8 +122,18 @@ public class Main {
             }
         }
 
+        Network network = null;
+        if (options.contains("--weights")) {
+            try {
+                network = Network.load(options.getFirst("--weights"));
+            } catch (IOException excp) {
+                error(1, "Could not read network weights: %s%n",
+                        excp.getMessage());
+            }
+        }
+
         return new Game(view, log, reporter, manualPlayer,
-                new MachinePlayer(), options.contains("--strict"));
+                new MachinePlayer(network), options.contains("--strict"));
     }
 
     /**
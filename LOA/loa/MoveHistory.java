@@ -0,0 +1,116 @@
+package loa;
+
+import java.util.Arrays;
+
+import static loa.Square.NUM_SQUARES;
+
+/**
+ * What a search has learned about which quiet (non-capturing) moves are
+ * good, for use in ordering moves.  For each ply it keeps the two most
+ * recent quiet moves that caused a cutoff there (the killers), which are
+ * likely to do so again in sibling positions; and for each starting and
+ * destination Square, a score that grows with the depth of the cutoffs
+ * caused by moves between them anywhere in the tree (the history).
+ *
+ * @author Amogh
+ */
+final class MoveHistory {
+
+    /**
+     * The number of killers kept for each ply.
+     */
+    static final int KILLERS = 2;
+
+    /**
+     * A history for searches of at most MAXPLY plies.
+     */
+    MoveHistory(int maxPly) {
+        _killers = new int[maxPly][KILLERS];
+        clearKillers();
+    }
+
+    /**
+     * Return the Kth most recent killer at PLY, or MovePicker.NO_MOVE.
+     */
+    int killer(int ply, int k) {
+        return _killers[ply][k];
+    }
+
+    /**
+     * Return the history score of packed MOVE.
+     */
+    int score(int move) {
+        return _scores[index(move)];
+    }
+
+    /**
+     * Record that packed MOVE caused a cutoff at PLY in a search of depth
+     * DEPTH.  Captures are ignored, since they are ordered by other means.
+     */
+    void cutoff(int ply, int move, int depth) {
+        if (MoveList.isCapture(move)) {
+            return;
+        }
+        int[] killers = _killers[ply];
+        if (killers[0] != move) {
+            killers[1] = killers[0];
+            killers[0] = move;
+        }
+        int i = index(move);
+        _scores[i] += depth * depth;
+        if (_scores[i] > MAX_SCORE) {
+            age();
+        }
+    }
+
+    /**
+     * Prepare for a new search: forget the killers, which belong to
+     * positions of the last one, and age the history scores.
+     */
+    void newSearch() {
+        clearKillers();
+        age();
+    }
+
+    /**
+     * Halve the history scores, so that recent cutoffs count for more than
+     * old ones.
+     */
+    private void age() {
+        for (int i = 0; i < _scores.length; i += 1) {
+            _scores[i] >>= 1;
+        }
+    }
+
+    /**
+     * Set all killers to MovePicker.NO_MOVE.
+     */
+    private void clearKillers() {
+        for (int[] killers : _killers) {
+            Arrays.fill(killers, MovePicker.NO_MOVE);
+        }
+    }
+
+    /**
+     * Return the index in _scores of packed MOVE.
+     */
+    private static int index(int move) {
+        return MoveList.from(move).index() * NUM_SQUARES
+                + MoveList.to(move).index();
+    }
+
+    /**
+     * Largest history score before all are halved.
+     */
+    private static final int MAX_SCORE = 1 << 20;
+
+    /**
+     * The killers of each ply, most recent first.
+     */
+    private final int[][] _killers;
+    /**
+     * History score of each move, indexed by starting and destination
+     * Square.
+     */
+    private final int[] _scores = new int[NUM_SQUARES * NUM_SQUARES];
+}
@@ -0,0 +1,117 @@
+package loa;
+
+import static loa.Square.ALL_SQUARES;
+import static loa.Square.NUM_SQUARES;
+
+/**
+ * A reusable list of moves, each packed into an int, used by the search
+ * to generate moves without allocating.  A packed move holds the index
+ * of its starting Square in bits 0-5, the index of its destination in
+ * bits 6-11, and a capture flag in bit 12.
+ *
+ * @author Amogh
+ */
+final class MoveList {
+
+    /**
+     * An upper bound on the number of moves from any position: a piece
+     * has at most one move in each of 8 directions.
+     */
+    static final int MAX_MOVES = 8 * NUM_SQUARES;
+
+    /**
+     * Return the packed move from FROM to TO, capturing iff CAPTURE.
+     */
+    static int pack(Square from, Square to, boolean capture) {
+        return from.index() | (to.index() << TO_SHIFT)
+                | (capture ? CAPTURE_BIT : 0);
+    }
+
+    /**
+     * Return the Square moved from in packed MOVE.
+     */
+    static Square from(int move) {
+        return ALL_SQUARES[move & SQUARE_MASK];
+    }
+
+    /**
+     * Return the Square moved to in packed MOVE.
+     */
+    static Square to(int move) {
+        return ALL_SQUARES[(move >>> TO_SHIFT) & SQUARE_MASK];
+    }
+
+    /**
+     * Return true iff packed MOVE is a capture.
+     */
+    static boolean isCapture(int move) {
+        return (move & CAPTURE_BIT) != 0;
+    }
+
+    /**
+     * Return the (unique) Move denoted by packed MOVE.
+     */
+    static Move toMove(int move) {
+        return Move.mv(from(move), to(move), isCapture(move));
+    }
+
+    /**
+     * Return the number of moves in me.
+     */
+    int size() {
+        return _size;
+    }
+
+    /**
+     * Return my Kth packed move, 0 <= K < size().
+     */
+    int get(int k) {
+        return _moves[k];
+    }
+
+    /**
+     * Append packed MOVE to me.
+     */
+    void add(int move) {
+        _moves[_size] = move;
+        _size += 1;
+    }
+
+    /**
+     * Exchange my Ith and Jth packed moves.
+     */
+    void swap(int i, int j) {
+        int move = _moves[i];
+        _moves[i] = _moves[j];
+        _moves[j] = move;
+    }
+
+    /**
+     * Remove all moves from me.
+     */
+    void clear() {
+        _size = 0;
+    }
+
+    /**
+     * Shift amount of the destination index in a packed move.
+     */
+    private static final int TO_SHIFT = 6;
+    /**
+     * Mask of a Square index in a packed move.
+     */
+    private static final int SQUARE_MASK = (1 << TO_SHIFT) - 1;
+    /**
+     * Capture flag of a packed move.
+     */
+    private static final int CAPTURE_BIT = 1 << (2 * TO_SHIFT);
+
+    /**
+     * The packed moves.
+     */
+    private final int[] _moves = new int[MAX_MOVES];
+    /**
+     * Number of valid entries in _moves.
+     */
+    private int _size;
+}
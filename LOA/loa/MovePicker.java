@@ -0,0 +1,313 @@
+package loa;
+
+import static loa.Square.ALL_SQUARES;
+import static loa.Square.NUM_SQUARES;
+
+/**
+ * Delivers the legal moves from a position one at a time, in stages, so
+ * that a search that cuts off early does not pay for generating moves it
+ * never tries.  First comes a suggested move (such as the best move found
+ * by an earlier search), if it is legal; then all captures; then the
+ * killers of a MoveHistory, if they are legal; then all other moves.  The
+ * destinations of every piece are found when the captures are first
+ * requested, and the quiet moves are unpacked from them only if the
+ * search gets that far.  Within a stage, moves come best first: captures
+ * in order of how far they move toward the center, and quiet moves in
+ * order of history score, then of how far they move toward the center.
+ * Moves are packed as for MoveList, and no move is delivered twice.
+ *
+ * @author Amogh
+ */
+final class MovePicker {
+
+    /**
+     * A packed-move value denoting no move.
+     */
+    static final int NO_MOVE = -1;
+
+    /**
+     * Start delivering the legal moves of the player on move in BOARD,
+     * beginning with packed move FIRST if it is legal (FIRST may be
+     * NO_MOVE).  BOARD must not change until the moves are exhausted or
+     * abandoned, except by moves that are retracted before the next call
+     * to next().
+     */
+    void reset(Board board, int first) {
+        reset(board, first, null, 0);
+    }
+
+    /**
+     * Start delivering the legal moves of the player on move in BOARD, as
+     * for reset(BOARD, FIRST), ordering the quiet moves by the scores of
+     * HISTORY, if it is not null, and trying its killers for ply PLY
+     * after the captures.
+     */
+    void reset(Board board, int first, MoveHistory history, int ply) {
+        _board = board;
+        _history = history;
+        _ply = ply;
+        _stage = _current = CAPTURES;
+        _moves.clear();
+        _next = 0;
+        _numKillers = 0;
+        _first = legalMove(first);
+        if (_first != NO_MOVE) {
+            _stage = FIRST;
+        }
+    }
+
+    /**
+     * Return the next packed move, or NO_MOVE if there are no more.
+     */
+    int next() {
+        while (true) {
+            if (_next < _moves.size()) {
+                int move = nextBest();
+                if (!delivered(move)) {
+                    return move;
+                }
+                continue;
+            }
+            _current = _stage;
+            switch (_stage) {
+            case FIRST:
+                _stage = CAPTURES;
+                return _first;
+            case CAPTURES:
+                generateCaptures();
+                _stage = KILLERS;
+                break;
+            case KILLERS:
+                _stage = QUIETS;
+                int killer = nextKiller();
+                if (killer != NO_MOVE) {
+                    _stage = KILLERS;
+                    return killer;
+                }
+                break;
+            case QUIETS:
+                generateQuiets();
+                _stage = DONE;
+                break;
+            default:
+                return NO_MOVE;
+            }
+        }
+    }
+
+    /**
+     * Return the stage (FIRST, CAPTURES, KILLERS, or QUIETS) that supplied
+     * the move last returned by next(), or DONE if it returned NO_MOVE.
+     */
+    int stage() {
+        return _current;
+    }
+
+    /**
+     * Return the undelivered move of _moves with the highest score,
+     * marking it delivered.
+     */
+    private int nextBest() {
+        int best = _next;
+        for (int i = _next + 1; i < _moves.size(); i += 1) {
+            if (_scores[i] > _scores[best]) {
+                best = i;
+            }
+        }
+        int move = _moves.get(best);
+        _moves.swap(best, _next);
+        _scores[best] = _scores[_next];
+        _next += 1;
+        return move;
+    }
+
+    /**
+     * Return the next legal killer not yet delivered, or NO_MOVE if
+     * there is none.
+     */
+    private int nextKiller() {
+        if (_history == null) {
+            return NO_MOVE;
+        }
+        while (_numKillers < MoveHistory.KILLERS) {
+            int killer = legalMove(_history.killer(_ply, _numKillers));
+            _killers[_numKillers] = killer;
+            _numKillers += 1;
+            if (killer != NO_MOVE && !MoveList.isCapture(killer)
+                    && !sameMove(killer, _first)) {
+                return killer;
+            }
+        }
+        return NO_MOVE;
+    }
+
+    /**
+     * Return packed MOVE, with its capture flag set correctly, if it is
+     * legal for the player on move, and otherwise NO_MOVE.
+     */
+    private int legalMove(int move) {
+        if (move == NO_MOVE) {
+            return NO_MOVE;
+        }
+        Board board = _board;
+        Square from = MoveList.from(move), to = MoveList.to(move);
+        if ((board.pieces(board.turn()) & from.bit()) == 0
+                || (board.destinations(from) & to.bit()) == 0) {
+            return NO_MOVE;
+        }
+        return MoveList.pack(from, to, (board.occupied() & to.bit()) != 0);
+    }
+
+    /**
+     * Return true iff packed MOVE was delivered by an earlier stage.
+     */
+    private boolean delivered(int move) {
+        if (sameMove(move, _first)) {
+            return true;
+        }
+        for (int k = 0; k < _numKillers; k += 1) {
+            if (sameMove(move, _killers[k])) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Replace _moves with the captures available to the player on move,
+     * recording the destinations of its other moves in _quiet.
+     */
+    private void generateCaptures() {
+        Board board = _board;
+        long opponents = board.pieces(board.turn().opposite());
+        _moves.clear();
+        _next = 0;
+        _numPieces = 0;
+        for (long own = board.pieces(board.turn()); own != 0;
+             own &= own - 1) {
+            Square from = ALL_SQUARES[Long.numberOfTrailingZeros(own)];
+            long dests = board.destinations(from);
+            for (long caps = dests & opponents; caps != 0;
+                 caps &= caps - 1) {
+                Square to = ALL_SQUARES[Long.numberOfTrailingZeros(caps)];
+                _scores[_moves.size()] = centralization(from, to);
+                _moves.add(MoveList.pack(from, to, true));
+            }
+            _from[_numPieces] = from;
+            _quiet[_numPieces] = dests & ~opponents;
+            _numPieces += 1;
+        }
+    }
+
+    /**
+     * Replace _moves with the non-capturing moves recorded by
+     * generateCaptures.
+     */
+    private void generateQuiets() {
+        _moves.clear();
+        _next = 0;
+        for (int i = 0; i < _numPieces; i += 1) {
+            Square from = _from[i];
+            for (long dests = _quiet[i]; dests != 0; dests &= dests - 1) {
+                Square to = ALL_SQUARES[Long.numberOfTrailingZeros(dests)];
+                int move = MoveList.pack(from, to, false);
+                int score = centralization(from, to);
+                if (_history != null) {
+                    score += _history.score(move) * HISTORY_FACTOR;
+                }
+                _scores[_moves.size()] = score;
+                _moves.add(move);
+            }
+        }
+    }
+
+    /**
+     * Return the number of rings toward the center of the board by which
+     * a move from FROM to TO moves a piece (negative if it moves away).
+     */
+    private static int centralization(Square from, Square to) {
+        return from.centrality() - to.centrality();
+    }
+
+    /**
+     * Return true iff packed moves MOVE1 and MOVE2 have the same starting
+     * and destination Squares.
+     */
+    private static boolean sameMove(int move1, int move2) {
+        return move2 != NO_MOVE
+                && MoveList.from(move1) == MoveList.from(move2)
+                && MoveList.to(move1) == MoveList.to(move2);
+    }
+
+    /**
+     * Stages of move generation, in order.
+     */
+    static final int FIRST = 0, CAPTURES = 1, KILLERS = 2, QUIETS = 3,
+            DONE = 4;
+
+    /**
+     * Multiplier of history scores in the order of quiet moves, larger
+     * than any difference in centralization.
+     */
+    private static final int HISTORY_FACTOR = 8;
+
+    /**
+     * The position whose moves are being delivered.
+     */
+    private Board _board;
+    /**
+     * Source of the killers and history scores, or null.
+     */
+    private MoveHistory _history;
+    /**
+     * The ply whose killers are tried.
+     */
+    private int _ply;
+    /**
+     * The suggested first move, if legal, else NO_MOVE.
+     */
+    private int _first;
+    /**
+     * The next stage to be generated.
+     */
+    private int _stage;
+    /**
+     * The stage that supplied the last move delivered.
+     */
+    private int _current;
+    /**
+     * Moves of the current stage, of which the first _next have been
+     * delivered.
+     */
+    private final MoveList _moves = new MoveList();
+    /**
+     * The ordering score of each undelivered move of _moves.
+     */
+    private final int[] _scores = new int[MoveList.MAX_MOVES];
+    /**
+     * Number of moves of _moves already delivered.
+     */
+    private int _next;
+    /**
+     * The killers examined so far (NO_MOVE if illegal); the first
+     * _numKillers entries are valid.
+     */
+    private final int[] _killers = new int[MoveHistory.KILLERS];
+    /**
+     * Number of valid entries in _killers.
+     */
+    private int _numKillers;
+    /**
+     * The pieces of the player on move; the first _numPieces entries are
+     * valid.
+     */
+    private final Square[] _from = new Square[NUM_SQUARES];
+    /**
+     * Destinations of the non-capturing moves of the pieces in _from.
+     */
+    private final long[] _quiet = new long[NUM_SQUARES];
+    /**
+     * Number of valid entries in _quiet.
+     */
+    private int _numPieces;
+}
@@ -0,0 +1,260 @@
+package loa;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+import static loa.Piece.EMP;
+import static loa.Piece.WP;
+import static loa.Square.NUM_SQUARES;
+
+/**
+ * A small quantized neural network that evaluates positions, as an
+ * alternative to Board.heuristicValue.  Its inputs are one feature for
+ * each combination of color and Square, set when a piece of that color
+ * occupies that Square.  These feed one hidden layer, whose sums before
+ * activation (the accumulator) a Board keeps up to date as pieces are
+ * put and removed: each change adds or subtracts one column of input
+ * weights, so a move costs two or three columns rather than a full
+ * first layer.  The hidden values are clipped to [0, ACTIVATION_LIMIT]
+ * and combined by the output weights into a value in the units of
+ * heuristicValue, positive when White is ahead.  All arithmetic is
+ * integral.  Networks are immutable, and may be shared among Boards and
+ * threads.
+ * <p>
+ * A weights file holds, as big-endian binary data: the int MAGIC; the
+ * ints H (the hidden size, at most MAX_HIDDEN) and S (the output shift);
+ * H shorts of hidden biases; 2 * 64 * H shorts of input weights, the H
+ * weights of each feature together, White's features first, each color
+ * in order of Square index; H shorts of output weights; and the int
+ * output bias.  The value of a position is the sum of the output bias
+ * and the products of the clipped hidden values with their output
+ * weights, shifted right by S.
+ *
+ * @author Amogh
+ */
+final class Network {
+
+    /**
+     * Identifies a weights file ("LOAN").
+     */
+    static final int MAGIC = 0x4c4f414e;
+    /**
+     * The number of inputs.
+     */
+    static final int FEATURES = 2 * NUM_SQUARES;
+    /**
+     * The largest hidden value after activation.
+     */
+    static final int ACTIVATION_LIMIT = 255;
+    /**
+     * The largest hidden size accepted.
+     */
+    static final int MAX_HIDDEN = 1024;
+    /**
+     * The largest magnitude of a value.
+     */
+    static final int MAX_VALUE = 1 << 24;
+
+    /**
+     * A network with hidden biases BIASES, input weights INPUTWEIGHTS,
+     * output weights OUTPUTWEIGHTS, output bias OUTPUTBIAS, and output
+     * shift SHIFT, arranged as in a weights file.  The arrays are
+     * copied.
+     */
+    Network(short[] biases, short[] inputWeights, short[] outputWeights,
+            int outputBias, int shift) {
+        int hidden = biases.length;
+        if (hidden < 1 || hidden > MAX_HIDDEN
+                || inputWeights.length != FEATURES * hidden
+                || outputWeights.length != hidden
+                || shift < 0 || shift >= Long.SIZE) {
+            throw new IllegalArgumentException("malformed network");
+        }
+        _hidden = hidden;
+        _biases = toInts(biases);
+        _inputWeights = toInts(inputWeights);
+        _outputWeights = toInts(outputWeights);
+        _outputBias = outputBias;
+        _shift = shift;
+    }
+
+    /**
+     * Return the network in the weights file named FILENAME.
+     */
+    static Network load(String fileName) throws IOException {
+        try (InputStream in = new FileInputStream(fileName)) {
+            return load(in);
+        }
+    }
+
+    /**
+     * Return the network read from IN, which contains a weights file.
+     */
+    static Network load(InputStream in) throws IOException {
+        DataInputStream data =
+                new DataInputStream(new BufferedInputStream(in));
+        if (data.readInt() != MAGIC) {
+            throw new IOException("not a network weights file");
+        }
+        int hidden = data.readInt(), shift = data.readInt();
+        if (hidden < 1 || hidden > MAX_HIDDEN
+                || shift < 0 || shift >= Long.SIZE) {
+            throw new IOException("malformed network weights file");
+        }
+        short[] biases = readShorts(data, hidden),
+                inputWeights = readShorts(data, FEATURES * hidden),
+                outputWeights = readShorts(data, hidden);
+        int outputBias = data.readInt();
+        return new Network(biases, inputWeights, outputWeights,
+                outputBias, shift);
+    }
+
+    /**
+     * Write me to OUT as a weights file.
+     */
+    void save(OutputStream out) throws IOException {
+        DataOutputStream data =
+                new DataOutputStream(new BufferedOutputStream(out));
+        data.writeInt(MAGIC);
+        data.writeInt(_hidden);
+        data.writeInt(_shift);
+        writeShorts(data, _biases);
+        writeShorts(data, _inputWeights);
+        writeShorts(data, _outputWeights);
+        data.writeInt(_outputBias);
+        data.flush();
+    }
+
+    /**
+     * Return the number of hidden values.
+     */
+    int hiddenSize() {
+        return _hidden;
+    }
+
+    /**
+     * Set ACCUMULATOR, which must have length hiddenSize(), to the
+     * accumulator of the position with White pieces on WHITE and Black
+     * pieces on BLACK (bitboards).
+     */
+    void refresh(int[] accumulator, long white, long black) {
+        System.arraycopy(_biases, 0, accumulator, 0, _hidden);
+        for (long bits = white; bits != 0; bits &= bits - 1) {
+            add(accumulator, Long.numberOfTrailingZeros(bits), 1);
+        }
+        for (long bits = black; bits != 0; bits &= bits - 1) {
+            add(accumulator, NUM_SQUARES + Long.numberOfTrailingZeros(bits),
+                    1);
+        }
+    }
+
+    /**
+     * Update ACCUMULATOR for a change in the contents of SQ from OLD to
+     * NOW.
+     */
+    void update(int[] accumulator, Square sq, Piece old, Piece now) {
+        if (old != EMP) {
+            add(accumulator, feature(sq, old), -1);
+        }
+        if (now != EMP) {
+            add(accumulator, feature(sq, now), 1);
+        }
+    }
+
+    /**
+     * Return the value of the position whose accumulator is ACCUMULATOR.
+     */
+    int evaluate(int[] accumulator) {
+        long sum = _outputBias;
+        for (int h = 0; h < _hidden; h += 1) {
+            int x = Math.min(Math.max(accumulator[h], 0), ACTIVATION_LIMIT);
+            sum += x * _outputWeights[h];
+        }
+        long value = sum >> _shift;
+        return (int) Math.max(-MAX_VALUE, Math.min(MAX_VALUE, value));
+    }
+
+    /**
+     * Add SIGN (1 or -1) times the input weights of FEATURE to
+     * ACCUMULATOR.
+     */
+    private void add(int[] accumulator, int feature, int sign) {
+        int[] weights = _inputWeights;
+        int base = feature * _hidden;
+        for (int h = 0; h < _hidden; h += 1) {
+            accumulator[h] += sign * weights[base + h];
+        }
+    }
+
+    /**
+     * Return the feature number of a piece of color SIDE on SQ.
+     */
+    private static int feature(Square sq, Piece side) {
+        return (side == WP ? 0 : NUM_SQUARES) + sq.index();
+    }
+
+    /**
+     * Return N shorts read from DATA.
+     */
+    private static short[] readShorts(DataInputStream data, int n)
+        throws IOException {
+        short[] result = new short[n];
+        for (int i = 0; i < n; i += 1) {
+            result[i] = data.readShort();
+        }
+        return result;
+    }
+
+    /**
+     * Write the elements of VALUES, all within the range of short, to
+     * DATA.
+     */
+    private static void writeShorts(DataOutputStream data, int[] values)
+        throws IOException {
+        for (int v : values) {
+            data.writeShort(v);
+        }
+    }
+
+    /**
+     * Return the elements of VALUES as ints.
+     */
+    private static int[] toInts(short[] values) {
+        int[] result = new int[values.length];
+        for (int i = 0; i < values.length; i += 1) {
+            result[i] = values[i];
+        }
+        return result;
+    }
+
+    /**
+     * Number of hidden values.
+     */
+    private final int _hidden;
+    /**
+     * Initial value of the accumulator (that of the empty board).
+     */
+    private final int[] _biases;
+    /**
+     * Input weights; those of feature f are at f * _hidden and after.
+     */
+    private final int[] _inputWeights;
+    /**
+     * Weight of each clipped hidden value in the output.
+     */
+    private final int[] _outputWeights;
+    /**
+     * Constant term of the output.
+     */
+    private final int _outputBias;
+    /**
+     * Right shift applied to the output sum.
+     */
+    private final int _shift;
+}
@@ -54,12 +54,43 @@ final class Square {
         return _col;
     }
 
+    /**
+     * Return the number of the diagonal (running lower-left to
+     * upper-right) that contains me, between 0 and 2 * BOARD_SIZE - 2.
+     */
+    int diagonal() {
+        return _col - _row + BOARD_SIZE - 1;
+    }
+
+    /**
+     * Return the number of the antidiagonal (running upper-left to
+     * lower-right) that contains me, between 0 and 2 * BOARD_SIZE - 2.
+     */
+    int antidiagonal() {
+        return _col + _row;
+    }
+
     /**
      * Return distance (number of squares) to OTHER.
      */
     int distance(Square other) {
-        return Math.max(Math.abs(_row - other._row),
-                Math.abs(_col - other._col));
+        return DISTANCE[index()][other.index()];
+    }
+
+    /**
+     * Return my distance to the nearest of the four central Squares (d4,
+     * e4, d5, and e5): 0 for those, up to 3 for the edge Squares.
+     */
+    int centrality() {
+        return CENTRALITY[index()];
+    }
+
+    /**
+     * Return the bitboard of the Squares at distance D from me, where
+     * 0 <= D < BOARD_SIZE.
+     */
+    long ring(int d) {
+        return RINGS[index()][d];
     }
 
     /**
@@ -105,17 +136,27 @@ final class Square {
      * 7 for north-west. If DIR has another value, return null.
      */
     Square moveDest(int dir, int steps) {
-        if (dir < 0 || dir > 7 || steps <= 0) {
+        if (dir < 0 || dir > 7 || steps <= 0 || steps >= BOARD_SIZE) {
             return null;
         }
+        return MOVE_DEST[index()][dir][steps];
+    }
 
-        int c = col() + DC[dir] * steps,
-                r = row() + DR[dir] * steps;
-        if (exists(c, r)) {
-            return sq(c, r);
-        } else {
-            return null;
-        }
+    /**
+     * Return the bitboards of the four 2x2 windows of Squares that
+     * contain me, where windows may hang over the edge of the board (and
+     * then contain fewer than four Squares).
+     */
+    long[] quads() {
+        return QUADS[index()];
+    }
+
+    /**
+     * Return the bitboard of the Squares strictly between me and TO, if
+     * we lie on a common row, column, or diagonal, and otherwise 0.
+     */
+    long between(Square to) {
+        return BETWEEN[index()][to.index()];
     }
 
     /**
@@ -133,15 +174,14 @@ final class Square {
      * Return true if the Square is an edge Square.
      */
     boolean isEdge() {
-        return col() == BOARD_SIZE - 1 || col() == 0
-                || row() == BOARD_SIZE - 1 || row() == 0;
+        return (EDGE_SQUARES & bit()) != 0;
     }
 
     /**
-     * Return true if the Square is an edge Square.
+     * Return true if the Square is a corner Square.
      */
     boolean isCorner() {
-        return isEdge() && ((col() == row()) || (Math.abs(col() - row()) == 7));
+        return (CORNER_SQUARES & bit()) != 0;
     }
 
 
@@ -188,6 +228,14 @@ final class Square {
         return null;
     }
 
+    /**
+     * Return the difference between the index() of a Square and that of
+     * its neighbor in direction DIR.
+     */
+    static int step(int dir) {
+        return DR[dir] * BOARD_SIZE + DC[dir];
+    }
+
     /**
      * The Square (COL, ROW).
      */
@@ -210,6 +258,14 @@ final class Square {
         return (_row << 3) + _col;
     }
 
+    /**
+     * Return a bitboard (a long with bit i standing for the Square whose
+     * index() is i) containing only this Square.
+     */
+    long bit() {
+        return 1L << index();
+    }
+
     @Override
     public int hashCode() {
         return index();
@@ -288,6 +344,113 @@ final class Square {
         }
     }
 
+    /**
+     * A mapping of Square index s.index(), direction dir, and distance
+     * steps to the Square that is steps squares from s in direction dir
+     * (null if off the board).  Because a move in LOA travels exactly as
+     * many squares as there are pieces on its line, indexing by the line's
+     * piece count gives a move's destination directly.
+     */
+    private static final Square[][][] MOVE_DEST =
+            new Square[ALL_SQUARES.length][DIR.length][BOARD_SIZE];
+
+    /**
+     * A mapping of Square indices s and t to the bitboard of Squares
+     * strictly between s and t (0 when s and t do not share a line).
+     */
+    private static final long[][] BETWEEN =
+            new long[ALL_SQUARES.length][ALL_SQUARES.length];
+
+    static {
+        for (Square from : ALL_SQUARES) {
+            for (int dir = 0; dir < DIR.length; dir += 1) {
+                long path = 0;
+                for (int steps = 1; steps < BOARD_SIZE; steps += 1) {
+                    int c = from.col() + DC[dir] * steps,
+                            r = from.row() + DR[dir] * steps;
+                    if (!exists(c, r)) {
+                        break;
+                    }
+                    Square to = sq(c, r);
+                    MOVE_DEST[from.index()][dir][steps] = to;
+                    BETWEEN[from.index()][to.index()] = path;
+                    path |= to.bit();
+                }
+            }
+        }
+    }
+
+    /**
+     * A mapping of Square index s.index() to the bitboards of the 2x2
+     * windows containing s.
+     */
+    private static final long[][] QUADS = new long[ALL_SQUARES.length][4];
+
+    static {
+        for (Square sq : ALL_SQUARES) {
+            for (int k = 0; k < 4; k += 1) {
+                int c0 = sq.col() - (k & 1), r0 = sq.row() - (k >> 1);
+                for (int c = c0; c <= c0 + 1; c += 1) {
+                    for (int r = r0; r <= r0 + 1; r += 1) {
+                        if (exists(c, r)) {
+                            QUADS[sq.index()][k] |= sq(c, r).bit();
+                        }
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Bitboards of the edge Squares and of the four corner Squares.
+     */
+    static final long
+            EDGE_SQUARES = 0xff818181818181ffL,
+            CORNER_SQUARES = 0x8100000000000081L;
+
+    /**
+     * Bitboards of the leftmost and rightmost columns.
+     */
+    static final long
+            FILE_A = 0x0101010101010101L,
+            FILE_H = FILE_A << (BOARD_SIZE - 1);
+
+    /**
+     * A mapping of Square indices s and t to the distance between them.
+     */
+    private static final int[][] DISTANCE =
+            new int[ALL_SQUARES.length][ALL_SQUARES.length];
+
+    /**
+     * A mapping of Square index s.index() to s.centrality().
+     */
+    private static final int[] CENTRALITY = new int[ALL_SQUARES.length];
+
+    /**
+     * A mapping of Square index s.index() and distance d to the bitboard
+     * of Squares at distance d from s.
+     */
+    private static final long[][] RINGS =
+            new long[ALL_SQUARES.length][BOARD_SIZE];
+
+    static {
+        int center = BOARD_SIZE / 2;
+        for (Square from : ALL_SQUARES) {
+            int i = from.index();
+            for (Square to : ALL_SQUARES) {
+                int d = Math.max(Math.abs(from._row - to._row),
+                        Math.abs(from._col - to._col));
+                DISTANCE[i][to.index()] = d;
+                RINGS[i][d] |= to.bit();
+            }
+            int dc = from._col < center ? center - 1 - from._col
+                    : from._col - center,
+                    dr = from._row < center ? center - 1 - from._row
+                            : from._row - center;
+            CENTRALITY[i] = Math.max(dc, dr);
+        }
+    }
+
     /**
      * My row and column.
      */
@@ -0,0 +1,160 @@
+package loa;
+
+/**
+ * A fixed-size table of the results of searches of positions, keyed by
+ * Zobrist key, so that a search can reuse the work done on a position it
+ * reaches again, by a transposition of moves or in the next iteration of
+ * an iterative deepening.  Each entry records the depth of the search,
+ * its value, whether that value is exact or only a bound, and the best
+ * move found, packed into one long beside the full key.  The table is
+ * direct-mapped.  A new entry replaces the one in its slot unless that
+ * one was made during the same search, for a different position, and
+ * with a deeper search: deep results are the most costly to recompute.
+ *
+ * @author Amogh
+ */
+final class TranspositionTable {
+
+    /**
+     * Kinds of value: an upper bound, a lower bound, or an exact value.
+     */
+    static final int UPPER = 1, LOWER = 2, EXACT = 3;
+
+    /**
+     * The entry returned by probe for a position that is not in the
+     * table.
+     */
+    static final long MISSING = 0;
+
+    /**
+     * The largest depth that can be recorded.
+     */
+    static final int MAX_DEPTH = 0xff;
+
+    /**
+     * A table occupying at most MEGABYTES megabytes (at least one entry).
+     */
+    TranspositionTable(int megabytes) {
+        long entries = Math.max(1, (long) megabytes * (1 << 20)
+                / ENTRY_BYTES);
+        int logSize = Math.min(30, Long.SIZE - 1
+                - Long.numberOfLeadingZeros(entries));
+        _mask = (1 << logSize) - 1;
+        _keys = new long[1 << logSize];
+        _entries = new long[1 << logSize];
+    }
+
+    /**
+     * Return the entry for the position whose Zobrist key is KEY, or
+     * MISSING if there is none.
+     */
+    long probe(long key) {
+        int slot = (int) key & _mask;
+        return _keys[slot] == key ? _entries[slot] : MISSING;
+    }
+
+    /**
+     * Record that a search of depth DEPTH from the position with Zobrist
+     * key KEY found value VALUE of kind BOUND (UPPER, LOWER, or EXACT),
+     * with packed best move MOVE (or MovePicker.NO_MOVE), unless the
+     * replacement scheme keeps the entry now in its slot.
+     */
+    void store(long key, int depth, int value, int bound, int move) {
+        int slot = (int) key & _mask;
+        long old = _entries[slot];
+        if (old != MISSING && _keys[slot] != key
+                && generation(old) == _generation && depth(old) > depth) {
+            return;
+        }
+        _keys[slot] = key;
+        _entries[slot] = (value & 0xffffffffL)
+                | (long) (move + 1) << MOVE_SHIFT
+                | (long) Math.min(depth, MAX_DEPTH) << DEPTH_SHIFT
+                | (long) bound << BOUND_SHIFT
+                | (long) _generation << GENERATION_SHIFT;
+    }
+
+    /**
+     * Mark the start of a new search, so that entries from earlier ones
+     * are replaced freely.
+     */
+    void newSearch() {
+        _generation = (_generation + 1) & GENERATION_MASK;
+    }
+
+    /**
+     * Return the number of entries the table can hold.
+     */
+    int capacity() {
+        return _entries.length;
+    }
+
+    /**
+     * Return the value recorded in ENTRY.
+     */
+    static int value(long entry) {
+        return (int) entry;
+    }
+
+    /**
+     * Return the packed best move recorded in ENTRY, or
+     * MovePicker.NO_MOVE.
+     */
+    static int move(long entry) {
+        return (int) ((entry >>> MOVE_SHIFT) & MOVE_MASK) - 1;
+    }
+
+    /**
+     * Return the search depth recorded in ENTRY.
+     */
+    static int depth(long entry) {
+        return (int) ((entry >>> DEPTH_SHIFT) & MAX_DEPTH);
+    }
+
+    /**
+     * Return the kind of value (UPPER, LOWER, or EXACT) recorded in ENTRY.
+     */
+    static int bound(long entry) {
+        return (int) ((entry >>> BOUND_SHIFT) & 3);
+    }
+
+    /**
+     * Return the search number (modulo 256) recorded in ENTRY.
+     */
+    private static int generation(long entry) {
+        return (int) ((entry >>> GENERATION_SHIFT) & GENERATION_MASK);
+    }
+
+    /**
+     * Layout of an entry: the value in bits 0-31, the packed move plus 1
+     * in the next 14 bits, then the depth, the kind of value, and the
+     * search number.  An entry is never MISSING, since its kind is not 0.
+     */
+    private static final int
+            MOVE_SHIFT = 32, MOVE_MASK = (1 << 14) - 1,
+            DEPTH_SHIFT = 46,
+            BOUND_SHIFT = 54,
+            GENERATION_SHIFT = 56, GENERATION_MASK = 0xff;
+
+    /**
+     * Size of one entry, with its key.
+     */
+    private static final int ENTRY_BYTES = 2 * Long.BYTES;
+
+    /**
+     * Mask reducing a key to a slot number.
+     */
+    private final int _mask;
+    /**
+     * The Zobrist key of the position in each slot.
+     */
+    private final long[] _keys;
+    /**
+     * The packed entry in each slot, or MISSING.
+     */
+    private final long[] _entries;
+    /**
+     * Number (modulo 256) of the current search.
+     */
+    private int _generation;
+}